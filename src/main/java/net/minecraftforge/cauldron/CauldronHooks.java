@@ -104,7 +104,7 @@ public class CauldronHooks {
             if(world.getChunkProvider() instanceof ChunkProviderServer) // Thermos - allow the server to tick tiles that are trying to unload
             {
                 ChunkProviderServer cps = ((ChunkProviderServer)world.getChunkProvider());
-                if(cps.droppedChunksSet.contains(Long.valueOf(ChunkPos.asLong(tileEntity.getPos().getX() >> 4, tileEntity.getPos().getZ() >> 4))))
+                if(cps.droppedChunksSet.contains(ChunkPos.asLong(tileEntity.getPos().getX() >> 4, tileEntity.getPos().getZ() >> 4)))
                 {
                     Chunk c = cps.getChunkIfLoaded(tileEntity.getPos().getX() >> 4, tileEntity.getPos().getY() >> 4);
                     if(c != null)
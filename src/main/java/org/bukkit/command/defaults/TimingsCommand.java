@@ -23,17 +23,18 @@ import org.bukkit.plugin.SimplePluginManager;
 import org.bukkit.plugin.TimedRegisteredListener;
 import org.bukkit.util.StringUtil;
 import org.spigotmc.CustomTimingsHandler;
+import red.mohist.common.timings.TimingsEngine;
 
 import com.google.common.collect.ImmutableList;
 
 public class TimingsCommand extends BukkitCommand {
-    private static final List<String> TIMINGS_SUBCOMMANDS = ImmutableList.of("report", "reset", "on", "off", "paste"); // Spigot
+    private static final List<String> TIMINGS_SUBCOMMANDS = ImmutableList.of("report", "reset", "on", "off", "paste", "export"); // Spigot // Mohist - export
     public static long timingStart = 0; // Spigot
 
     public TimingsCommand(String name) {
         super(name);
         this.description = "Manages Spigot Timings data to see performance of the server."; // Spigot
-        this.usageMessage = "/timings <reset|report|on|off|paste>"; // Spigot
+        this.usageMessage = "/timings <reset|report|on|off|paste|export>"; // Spigot // Mohist - export
         this.setPermission("bukkit.command.timings");
     }
 
@@ -62,6 +63,21 @@ public class TimingsCommand extends BukkitCommand {
         if ("reset".equals(args[0])) {
             CustomTimingsHandler.reload();
             sender.sendMessage("Timings reset");
+        // Mohist start - per tick percentiles, the handler tree and the recent ticks for offline analysis
+        } else if ("export".equals(args[0])) {
+            int index = 0;
+            File timingFolder = new File("timings");
+            timingFolder.mkdirs();
+            File timings = new File(timingFolder, "timings.json");
+            while (timings.exists()) timings = new File(timingFolder, "timings" + (++index) + ".json");
+            try {
+                TimingsEngine.export(timings);
+                sender.sendMessage("Timings written to " + timings.getPath());
+            } catch (IOException e) {
+                sender.sendMessage(ChatColor.RED + "Error writing timings, check your console for more information");
+                Bukkit.getServer().getLogger().log(java.util.logging.Level.WARNING, "Could not export timings", e);
+            }
+        // Mohist end
         } else if ("merged".equals(args[0]) || "report".equals(args[0]) || paste) {
             long sampleTime = System.nanoTime() - timingStart;
             int index = 0;
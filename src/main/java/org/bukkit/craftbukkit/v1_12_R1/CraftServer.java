@@ -29,7 +29,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -62,7 +61,6 @@ import net.minecraft.world.MinecraftException;
 import net.minecraft.world.WorldServer;
 import net.minecraft.world.WorldSettings;
 import net.minecraft.world.WorldType;
-import net.minecraft.world.chunk.storage.RegionFile;
 import net.minecraft.world.chunk.storage.RegionFileCache;
 import net.minecraft.world.storage.MapData;
 import net.minecraft.world.storage.MapStorage;
@@ -166,6 +164,9 @@ import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.constructor.SafeConstructor;
 import org.yaml.snakeyaml.error.MarkedYAMLException;
 import red.mohist.Mohist;
+import red.mohist.common.async.ParallelWorldTicker;
+import red.mohist.common.remap.RemapPrefetcher;
+import red.mohist.common.remap.RemapUtils;
 import red.mohist.configuration.MohistConfig;
 import red.mohist.util.i18n.Message;
 
@@ -419,6 +420,8 @@ public final class CraftServer implements Server {
             DefaultPermissions.registerCorePermissions();
             CraftDefaultPermissions.registerCorePermissions();
             helpMap.initializeCommands();
+            RemapUtils.logTimings(); // Mohist
+            RemapPrefetcher.finish(); // Mohist
         }
 
     }
@@ -959,27 +962,7 @@ public final class CraftServer implements Server {
         DimensionManager.setWorld(handle.provider.getDimension(), null, FMLCommonHandler.instance().getMinecraftServerInstance()); // remove world from DimensionManager
         File parentFolder = world.getWorldFolder().getAbsoluteFile();
 
-        // Synchronized because access to RegionFileCache.a is guarded by this lock.
-        synchronized (RegionFileCache.class) {
-            // RegionFileCache.a should be RegionFileCache.cache
-            Iterator<Map.Entry<File, RegionFile>> i = RegionFileCache.REGIONS_BY_FILE.entrySet().iterator();
-            while(i.hasNext()) {
-                Map.Entry<File, RegionFile> entry = i.next();
-                File child = entry.getKey().getAbsoluteFile();
-                while (child != null) {
-                    if (child.equals(parentFolder)) {
-                        i.remove();
-                        try {
-                            entry.getValue().close(); // Should be RegionFile.close();
-                        } catch (IOException ex) {
-                            getLogger().log(Level.SEVERE, null, ex);
-                        }
-                        break;
-                    }
-                    child = child.getParentFile();
-                }
-            }
-        }
+        RegionFileCache.clearRegionFileReferences(parentFolder); // Mohist - striped region cache
         return true;
     }
 
@@ -1561,7 +1544,7 @@ public final class CraftServer implements Server {
 
     @Override
     public boolean isPrimaryThread() {
-        return Thread.currentThread().equals(console.primaryThread);
+        return Thread.currentThread().equals(console.primaryThread) || ParallelWorldTicker.isWorldThread(); // Mohist - world tick threads act as the primary thread for their world
     }
 
     @Override
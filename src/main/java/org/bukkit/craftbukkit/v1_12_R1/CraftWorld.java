@@ -573,7 +573,7 @@ public class CraftWorld implements World {
     }
 
     public boolean loadChunk(int x, int z, boolean generate) {
-        org.spigotmc.AsyncCatcher.catchOp("chunk load"); // Spigot
+        org.spigotmc.AsyncCatcher.catchOp("chunk load", world); // Spigot // Mohist
         chunkLoadCount++;
         if (generate) {
             // Use the default variant of loadChunk when generate == true.
@@ -1522,6 +1522,7 @@ public class CraftWorld implements World {
     @SuppressWarnings("unchecked")
     public <T extends Entity> T addEntity(net.minecraft.entity.Entity entity, SpawnReason reason, Consumer<T> function) throws IllegalArgumentException {
         Preconditions.checkArgument(entity != null, "Cannot spawn null entity");
+        org.spigotmc.AsyncCatcher.catchOp("entity add", world); // Mohist
 
         if (entity instanceof EntityLiving) {
             ((EntityLiving) entity).onInitialSpawn(getHandle().getDifficultyForLocation(new BlockPos(entity)), null);
@@ -22,6 +22,9 @@ public class SpigotTimings {
     public static final CustomTimingsHandler timeUpdateTimer = new CustomTimingsHandler("Time Update");
     public static final CustomTimingsHandler serverCommandTimer = new CustomTimingsHandler("Server Command");
     public static final CustomTimingsHandler worldSaveTimer = new CustomTimingsHandler("World Save");
+    public static final CustomTimingsHandler chunkSaveBackpressureTimer = new CustomTimingsHandler("Chunk Save Pipeline - Backpressure Wait"); // Mohist
+    public static final CustomTimingsHandler chunkSaveCompressTimer = new CustomTimingsHandler("Chunk Save Pipeline - Compress"); // Mohist
+    public static final CustomTimingsHandler chunkSaveWriteTimer = new CustomTimingsHandler("Chunk Save Pipeline - Region Write"); // Mohist
 
     public static final CustomTimingsHandler entityMoveTimer = new CustomTimingsHandler("** entityMove");
     public static final CustomTimingsHandler tickEntityTimer = new CustomTimingsHandler("** tickEntity");
@@ -52,7 +55,7 @@ public class SpigotTimings {
      * @param period
      * @return
      */
-    public static CustomTimingsHandler getPluginTaskTimings(BukkitTask task, long period) {
+    public static synchronized CustomTimingsHandler getPluginTaskTimings(BukkitTask task, long period) { // Mohist - synchronized, handlers are created off the main thread too
         if (!task.isSync()) {
             return null;
         }
@@ -87,11 +90,11 @@ public class SpigotTimings {
      * @param entity
      * @return
      */
-    public static CustomTimingsHandler getEntityTimings(Entity entity) {
+    public static synchronized CustomTimingsHandler getEntityTimings(Entity entity) { // Mohist - synchronized, handlers are created off the main thread too
         String entityType = entity.getClass().getName();
         CustomTimingsHandler result = entityTypeTimingMap.get(entityType);
         if (result == null) {
-            result = new CustomTimingsHandler("** tickEntity - " + entity.getClass().getSimpleName(), activatedEntityTimer);
+            result = new CustomTimingsHandler("** tickEntity - " + entity.getClass().getSimpleName(), tickEntityTimer); // Mohist - ticked in place of tickEntityTimer
             entityTypeTimingMap.put(entityType, result);
         }
         return result;
@@ -102,7 +105,7 @@ public class SpigotTimings {
      * @param entity
      * @return
      */
-    public static CustomTimingsHandler getTileEntityTimings(TileEntity entity) {
+    public static synchronized CustomTimingsHandler getTileEntityTimings(TileEntity entity) { // Mohist - synchronized, handlers are created off the main thread too
         String entityType = entity.getClass().getName();
         CustomTimingsHandler result = tileEntityTypeTimingMap.get(entityType);
         if (result == null) {
@@ -201,6 +201,7 @@ public class CraftBlock implements Block {
     }
 
     public boolean setTypeIdAndData(final int type, final byte data, final boolean applyPhysics) {
+        org.spigotmc.AsyncCatcher.catchOp("block set", chunk.getHandle().getWorld()); // Mohist
         IBlockState blockData = getNMSBlock(type).getStateFromMeta(data);
         BlockPos position = new BlockPos(x, y, z);
 
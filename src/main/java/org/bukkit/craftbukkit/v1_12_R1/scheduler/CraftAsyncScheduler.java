@@ -25,29 +25,20 @@ package org.bukkit.craftbukkit.v1_12_R1.scheduler;
 
 import com.destroystokyo.paper.ServerSchedulerReportingWrapper;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 import org.bukkit.plugin.Plugin;
+import red.mohist.common.async.FairTaskPool;
+import red.mohist.common.async.MohistThreadBox;
 
 public class CraftAsyncScheduler extends CraftScheduler {
 
-    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
-            4, Integer.MAX_VALUE, 30L, TimeUnit.SECONDS, new SynchronousQueue<>(),
-            new ThreadFactoryBuilder().setNameFormat("Craft Scheduler Thread - %1$d").build());
+    private final FairTaskPool executor = MohistThreadBox.ASYNC_POOL; // Mohist - bounded, fair between plugins
     private final Executor management = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
             .setNameFormat("Craft Async Scheduler Management Thread").build());
-    private final List<CraftTask> temp = new ArrayList<>();
 
     CraftAsyncScheduler() {
         super(true);
-        executor.allowCoreThreadTimeOut(true);
-        executor.prestartAllCoreThreads();
     }
 
     /**
@@ -66,13 +57,10 @@ public class CraftAsyncScheduler extends CraftScheduler {
 
     private synchronized void removeTask(int taskId) {
         parsePending();
-        this.pending.removeIf((task) -> {
-            if (task.getTaskId() == taskId) {
-                task.cancel0();
-                return true;
-            }
-            return false;
-        });
+        CraftTask task = this.pending.remove(taskId); // Mohist
+        if (task != null) {
+            task.cancel0();
+        }
     }
 
     @Override
@@ -83,25 +71,23 @@ public class CraftAsyncScheduler extends CraftScheduler {
 
     private synchronized void runTasks(int currentTick) {
         parsePending();
-        while (!this.pending.isEmpty() && this.pending.peek().getNextRun() <= currentTick) {
-            CraftTask task = this.pending.remove();
+        CraftTask task;
+        while ((task = this.pending.poll(currentTick)) != null) { // Mohist
             if (executeTask(task)) {
                 final long period = task.getPeriod();
                 if (period > 0) {
                     task.setNextRun(currentTick + period);
-                    temp.add(task);
+                    this.pending.add(task); // Mohist - due in a later tick
                 }
             }
             parsePending();
         }
-        this.pending.addAll(temp);
-        temp.clear();
     }
 
     private boolean executeTask(CraftTask task) {
         if (isValid(task)) {
             this.runners.put(task.getTaskId(), task);
-            this.executor.execute(new ServerSchedulerReportingWrapper(task));
+            this.executor.execute(task.getOwner(), new ServerSchedulerReportingWrapper(task)); // Mohist
             return true;
         }
         return false;
@@ -110,13 +96,24 @@ public class CraftAsyncScheduler extends CraftScheduler {
     @Override
     public synchronized void cancelTasks(Plugin plugin) {
         parsePending();
-        for (Iterator<CraftTask> iterator = this.pending.iterator(); iterator.hasNext(); ) {
-            CraftTask task = iterator.next();
-            if (task.getTaskId() != -1 && (plugin == null || task.getOwner().equals(plugin))) {
+        this.pending.removeIf(task -> { // Mohist
+            if (plugin == null || task.getOwner().equals(plugin)) {
                 task.cancel0();
-                iterator.remove();
+                return true;
             }
+            return false;
+        });
+        // Mohist start - tasks running on the pool right now report isCancelled as well
+        for (CraftTask runner : this.runners.values()) {
+            if (plugin == null || runner.getOwner().equals(plugin)) {
+                runner.cancel0();
+            }
+        }
+        // SimplePluginManager cancels the tasks of a plugin after disabling it, the pool can let go of it then
+        if (plugin != null && !plugin.isEnabled()) {
+            this.executor.remove(plugin);
         }
+        // Mohist end
     }
 
     @Override
@@ -1,10 +1,7 @@
 package org.bukkit.craftbukkit.v1_12_R1.scheduler;
 
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
@@ -18,11 +15,13 @@ import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scheduler.BukkitScheduler;
 import org.bukkit.scheduler.BukkitTask;
 import org.bukkit.scheduler.BukkitWorker;
+import red.mohist.common.scheduler.SyncTaskStats;
+import red.mohist.configuration.MohistConfig;
 
 /**
  * The fundamental concepts for this implementation:
  * <li>Main thread owns {@link #head} and {@link #currentTick}, but it may be read from any thread</li>
- * <li>Main thread exclusively controls {@link #temp} and {@link #pending}.
+ * <li>Main thread exclusively controls {@link #pending}.
  *     They are never to be accessed outside of the main thread; alternatives exist to prevent locking.</li>
  * <li>{@link #head} to {@link #tail} act as a linked list/queue, with 1 consumer and infinite producers.
  *     Adding to the tail is atomic and very efficient; utility method is {@link #handle(CraftTask, long)} or {@link #addTask(CraftTask)}. </li>
@@ -31,9 +30,9 @@ import org.bukkit.scheduler.BukkitWorker;
  *     Async tasks must be synchronized to make sure that any thread that's finishing will remove itself from {@link #runners}.
  *     Another utility method is provided for this, {@link #cancelTask(int)}</li>
  * <li>{@link #runners} provides a moderately up-to-date view of active tasks.
- *     If the linked head to tail set is read, all remaining tasks that were active at the time execution started will be located in runners.</li>
+ *     Tasks enter it as soon as they are scheduled, so it also indexes the ones still in the linked list.</li>
  * <li>Async tasks are responsible for removing themselves from runners</li>
- * <li>Sync tasks are only to be removed from runners on the main thread when coupled with a removal from pending and temp.</li>
+ * <li>Sync tasks are only to be removed from runners on the main thread when coupled with a removal from pending.</li>
  * <li>Most of the design in this scheduler relies on queuing special tasks to perform any data changes on the main thread.
  *     When executed from inside a synchronous method, the scheduler will be updated before next execution by virtue of the frequent {@link #parsePending()} calls.</li>
  */
@@ -52,8 +51,7 @@ public class CraftScheduler implements BukkitScheduler {
     /**
      * Main thread logic only
      */
-    final PriorityQueue<CraftTask> pending = new PriorityQueue<>(10, // Paper
-            Comparator.comparingLong(CraftTask::getNextRun).thenComparingInt(CraftTask::getTaskId));
+    final CraftTaskWheel pending = new CraftTaskWheel(); // Mohist - timing wheel instead of a PriorityQueue
     /**
      * These are tasks that are currently active. It's provided for 'viewing' the current state.
      */
@@ -62,10 +60,6 @@ public class CraftScheduler implements BukkitScheduler {
      * Counter for IDs. Order doesn't matter, only uniqueness.
      */
     private final AtomicInteger ids = new AtomicInteger(1);
-    /**
-     * Main thread logic only
-     */
-    private final List<CraftTask> temp = new ArrayList<>();
     // Paper start
     private final CraftScheduler asyncScheduler;
     private final boolean isAsyncScheduler;
@@ -190,43 +184,21 @@ public class CraftScheduler implements BukkitScheduler {
             this.asyncScheduler.cancelTask(taskId);
         }
         // Paper end
+        // Mohist start - runners holds tasks from the moment they are scheduled, the wheel removes by id
         CraftTask task = runners.get(taskId);
         if (task != null) {
             task.cancel0();
         }
-        task = new CraftTask(
-                new Runnable() {
-                    public void run() {
-                        if (!check(CraftScheduler.this.temp)) {
-                            check(CraftScheduler.this.pending);
-                        }
-                    }
-
-                    private boolean check(final Iterable<CraftTask> collection) {
-                        final Iterator<CraftTask> tasks = collection.iterator();
-                        while (tasks.hasNext()) {
-                            final CraftTask task = tasks.next();
-                            if (task.getTaskId() == taskId) {
-                                task.cancel0();
-                                tasks.remove();
-                                if (task.isSync()) {
-                                    runners.remove(taskId);
-                                }
-                                return true;
-                            }
-                        }
-                        return false;
-                    }
-                }); // Paper
-        handle(task, 0L);
-        for (CraftTask taskPending = head.getNext(); taskPending != null; taskPending = taskPending.getNext()) {
-            if (taskPending == task) {
-                return;
-            }
-            if (taskPending.getTaskId() == taskId) {
-                taskPending.cancel0();
+        handle(new CraftTask(() -> {
+            final CraftTask removed = CraftScheduler.this.pending.remove(taskId);
+            if (removed != null) {
+                removed.cancel0();
+                if (removed.isSync()) {
+                    runners.remove(taskId, removed);
+                }
             }
-        }
+        }), 0L);
+        // Mohist end
     }
 
     public void cancelTasks(final Plugin plugin) {
@@ -237,26 +209,16 @@ public class CraftScheduler implements BukkitScheduler {
         }
         // Paper end
         final CraftTask task = new CraftTask(
-                new Runnable() {
-                    public void run() {
-                        check(CraftScheduler.this.pending);
-                        check(CraftScheduler.this.temp);
+                () -> CraftScheduler.this.pending.removeIf(task1 -> {
+                    if (!task1.getOwner().equals(plugin)) {
+                        return false;
                     }
-
-                    void check(final Iterable<CraftTask> collection) {
-                        final Iterator<CraftTask> tasks = collection.iterator();
-                        while (tasks.hasNext()) {
-                            final CraftTask task = tasks.next();
-                            if (task.getOwner().equals(plugin)) {
-                                task.cancel0();
-                                tasks.remove();
-                                if (task.isSync()) {
-                                    runners.remove(task.getTaskId());
-                                }
-                            }
-                        }
+                    task1.cancel0();
+                    if (task1.isSync()) {
+                        runners.remove(task1.getTaskId(), task1);
                     }
-                }); // Paper
+                    return true;
+                })); // Paper // Mohist
         handle(task, 0L);
         for (CraftTask taskPending = head.getNext(); taskPending != null; taskPending = taskPending.getNext()) {
             if (taskPending == task) {
@@ -271,6 +233,12 @@ public class CraftScheduler implements BukkitScheduler {
                 runner.cancel0();
             }
         }
+        // Mohist start - the task running right now is out of the wheel until it returns, it must not be added back
+        final CraftTask running = currentTask;
+        if (running != null && plugin.equals(running.getOwner())) {
+            running.cancel0();
+        }
+        // Mohist end
     }
 
     public void cancelAllTasks() {
@@ -279,19 +247,16 @@ public class CraftScheduler implements BukkitScheduler {
             this.asyncScheduler.cancelAllTasks();
         }
         // Paper end
+        // Mohist start - only what is pending now, runners already holds tasks scheduled after this call
         final CraftTask task = new CraftTask(
-                () -> {
-                    Iterator<CraftTask> it = CraftScheduler.this.runners.values().iterator();
-                    while (it.hasNext()) {
-                        CraftTask task1 = it.next();
-                        task1.cancel0();
-                        if (task1.isSync()) {
-                            it.remove();
-                        }
+                () -> CraftScheduler.this.pending.removeIf(task1 -> {
+                    task1.cancel0();
+                    if (task1.isSync()) {
+                        runners.remove(task1.getTaskId(), task1);
                     }
-                    CraftScheduler.this.pending.clear();
-                    CraftScheduler.this.temp.clear();
-                }); // Paper
+                    return true;
+                })); // Paper
+        // Mohist end
         handle(task, 0L);
         for (CraftTask taskPending = head.getNext(); taskPending != null; taskPending = taskPending.getNext()) {
             if (taskPending == task) {
@@ -302,6 +267,12 @@ public class CraftScheduler implements BukkitScheduler {
         for (CraftTask runner : runners.values()) {
             runner.cancel0();
         }
+        // Mohist start - the task running right now is out of the wheel until it returns, it must not be added back
+        final CraftTask running = currentTask;
+        if (running != null) {
+            running.cancel0();
+        }
+        // Mohist end
     }
 
     public boolean isCurrentlyRunning(final int taskId) {
@@ -334,12 +305,7 @@ public class CraftScheduler implements BukkitScheduler {
             return true;
         }
         // Paper end
-        for (CraftTask task = head.getNext(); task != null; task = task.getNext()) {
-            if (task.getTaskId() == taskId) {
-                return task.getPeriod() >= CraftTask.NO_REPEATING; // The task will run
-            }
-        }
-        CraftTask task = runners.get(taskId);
+        CraftTask task = runners.get(taskId); // Mohist - scheduled tasks are in runners right away
         return task != null && task.getPeriod() >= CraftTask.NO_REPEATING;
     }
 
@@ -366,26 +332,13 @@ public class CraftScheduler implements BukkitScheduler {
     }
 
     public List<BukkitTask> getPendingTasks() {
-        final ArrayList<CraftTask> truePending = new ArrayList<>();
-        for (CraftTask task = head.getNext(); task != null; task = task.getNext()) {
-            if (task.getTaskId() != -1) {
-                // -1 is special code
-                truePending.add(task);
-            }
-        }
-
+        // Mohist - runners covers the tasks still in the linked list as well
         final ArrayList<BukkitTask> pending = new ArrayList<>();
         for (CraftTask task : runners.values()) {
             if (task.getPeriod() >= CraftTask.NO_REPEATING) {
                 pending.add(task);
             }
         }
-
-        for (final CraftTask task : truePending) {
-            if (task.getPeriod() >= CraftTask.NO_REPEATING && !pending.contains(task)) {
-                pending.add(task);
-            }
-        }
         // Paper start
         if (!this.isAsyncScheduler) {
             pending.addAll(this.asyncScheduler.getPendingTasks());
@@ -404,10 +357,29 @@ public class CraftScheduler implements BukkitScheduler {
         }
         // Paper end
         this.currentTick = currentTick;
-        final List<CraftTask> temp = this.temp;
         parsePending();
-        while (isReady(currentTick)) {
-            final CraftTask task = pending.remove();
+        // Mohist start - optional time budget, ready tasks left over run first in the next tick
+        final long budget = MohistConfig.instance == null ? 0 : MohistConfig.instance.syncTaskBudgetMicros.getValue() * 1000L;
+        final long start = System.nanoTime();
+        long now = start;
+        boolean ran = false;
+        CraftTask task;
+        while (true) {
+            if (budget > 0 && ran && now - start >= budget) {
+                if (pending.getReadyCount() > 0) {
+                    SyncTaskStats.recordDeferredTick();
+                    pending.forEachReady(deferred -> {
+                        if (deferred.getPeriod() >= CraftTask.NO_REPEATING) {
+                            SyncTaskStats.get(deferred.getOwner()).recordDeferred();
+                        }
+                    });
+                }
+                break;
+            }
+            if ((task = pending.poll(currentTick)) == null) {
+                break;
+            }
+            // Mohist end
             if (task.getPeriod() < CraftTask.NO_REPEATING) {
                 if (task.isSync()) {
                     runners.remove(task.getTaskId(), task);
@@ -417,6 +389,13 @@ public class CraftScheduler implements BukkitScheduler {
             }
             if (task.isSync()) {
                 currentTask = task;
+                // Mohist start
+                ran = true;
+                final long taskStart = System.nanoTime();
+                if (task.timings != null) {
+                    task.timings.startTiming();
+                }
+                // Mohist end
                 try {
                     task.run();
                 } catch (final Throwable throwable) {
@@ -433,6 +412,14 @@ public class CraftScheduler implements BukkitScheduler {
                     // Paper end
                 } finally {
                     currentTask = null;
+                    // Mohist start
+                    if (task.timings != null) {
+                        task.timings.stopTiming();
+                    }
+                    final long end = System.nanoTime();
+                    SyncTaskStats.get(task.getOwner()).recordRun(currentTick - task.getNextRun(), end - taskStart);
+                    now = end;
+                    // Mohist end
                 }
                 parsePending();
             } else {
@@ -444,13 +431,11 @@ public class CraftScheduler implements BukkitScheduler {
             final long period = task.getPeriod(); // State consistency
             if (period > 0) {
                 task.setNextRun(currentTick + period);
-                temp.add(task);
+                pending.add(task); // Mohist - due in a later tick, cannot come up again in this loop
             } else if (task.isSync()) {
                 runners.remove(task.getTaskId());
             }
         }
-        pending.addAll(temp);
-        temp.clear();
         //debugHead = debugHead.getNextHead(currentTick); // Paper
     }
 
@@ -471,6 +456,11 @@ public class CraftScheduler implements BukkitScheduler {
         }
         // Paper end
         task.setNextRun(currentTick + delay);
+        // Mohist start - index the task before it can be seen in the list
+        if (task.getTaskId() != -1) {
+            runners.put(task.getTaskId(), task);
+        }
+        // Mohist end
         addTask(task);
         return task;
     }
@@ -488,8 +478,11 @@ public class CraftScheduler implements BukkitScheduler {
                 task.run();
             } else if (task.getPeriod() >= CraftTask.NO_REPEATING) {
                 pending.add(task);
-                runners.put(task.getTaskId(), task);
+            // Mohist start - cancelled before it got here
+            } else if (task.isSync()) {
+                runners.remove(task.getTaskId(), task);
             }
+            // Mohist end
         }
         // We split this because of the way things are ordered for all of the async calls in CraftScheduler
         // (it prevents race-conditions)
@@ -500,10 +493,6 @@ public class CraftScheduler implements BukkitScheduler {
         this.head = lastTask;
     }
 
-    private boolean isReady(final int currentTick) {
-        return !pending.isEmpty() && pending.peek().getNextRun() <= currentTick;
-    }
-
     @Override
     public String toString() {
         // Paper start
@@ -29,6 +29,11 @@ public class CraftTask implements BukkitTask, Runnable {
      */
     private volatile long period;
     private long nextRun;
+    // Mohist start - links of CraftTaskWheel, only touched by the thread running the scheduler
+    int wheelSlot = CraftTaskWheel.NONE;
+    CraftTask wheelPrev;
+    CraftTask wheelNext;
+    // Mohist end
 
     final CustomTimingsHandler timings; // Spigot
     CraftTask() {
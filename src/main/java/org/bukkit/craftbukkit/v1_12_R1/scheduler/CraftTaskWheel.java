@@ -0,0 +1,196 @@
+package org.bukkit.craftbukkit.v1_12_R1.scheduler;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Hierarchical timing wheel holding the pending tasks of a {@link CraftScheduler}, in place of
+ * a PriorityQueue over all of them. Four levels of 64 slots cover 64, 4096, 262144 and
+ * 16777216 ticks ahead; a task sits in the slot of its {@link CraftTask#getNextRun()} on the
+ * lowest level that reaches it and moves down a level whenever the level above turns over.
+ * Adding and removing are constant time, advancing costs one slot per tick plus the cascades.
+ * Tasks further out than the top level wait at its far end and are placed again when they
+ * come up there.
+ * <p>
+ * Tasks that are due go to a small queue ordered like the old PriorityQueue, by next run and
+ * then by id, so tasks of one tick still run in the order they were scheduled. The id index
+ * makes {@link #remove(int)} constant time. Only the thread running the scheduler may touch
+ * the wheel.
+ */
+class CraftTaskWheel {
+
+    static final int NONE = -1;
+    static final int READY = -2;
+
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long SPAN = 1L << (BITS * LEVELS);
+
+    private final CraftTask[] slots = new CraftTask[LEVELS * SLOTS];
+    private final PriorityQueue<CraftTask> ready = new PriorityQueue<>(10,
+            Comparator.comparingLong(CraftTask::getNextRun).thenComparingInt(CraftTask::getTaskId));
+    private final Int2ObjectOpenHashMap<CraftTask> byId = new Int2ObjectOpenHashMap<>();
+    private long tick = -1;
+    private int slotted;
+
+    void add(CraftTask task) {
+        this.byId.put(task.getTaskId(), task);
+        this.place(task);
+    }
+
+    /**
+     * @return the next task due at or before the given tick, or null
+     */
+    CraftTask poll(long currentTick) {
+        if (this.tick < currentTick) {
+            this.advance(currentTick);
+        }
+        CraftTask task = this.ready.poll();
+        if (task != null) {
+            task.wheelSlot = NONE;
+            this.byId.remove(task.getTaskId());
+        }
+        return task;
+    }
+
+    /**
+     * @return the removed task, or null if no task with that id is pending
+     */
+    CraftTask remove(int taskId) {
+        CraftTask task = this.byId.remove(taskId);
+        if (task != null) {
+            this.unlink(task);
+        }
+        return task;
+    }
+
+    boolean removeIf(Predicate<CraftTask> filter) {
+        boolean removed = false;
+        ObjectIterator<CraftTask> iterator = this.byId.values().iterator();
+        while (iterator.hasNext()) {
+            CraftTask task = iterator.next();
+            if (filter.test(task)) {
+                iterator.remove();
+                this.unlink(task);
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Visits the tasks that were due at the last {@link #poll} but have not been taken, in no particular order.
+     */
+    void forEachReady(Consumer<CraftTask> action) {
+        this.ready.forEach(action);
+    }
+
+    int getReadyCount() {
+        return this.ready.size();
+    }
+
+    void clear() {
+        for (CraftTask task : this.byId.values()) {
+            task.wheelSlot = NONE;
+            task.wheelPrev = task.wheelNext = null;
+        }
+        this.byId.clear();
+        this.ready.clear();
+        Arrays.fill(this.slots, null);
+        this.slotted = 0;
+    }
+
+    int size() {
+        return this.byId.size();
+    }
+
+    boolean isEmpty() {
+        return this.byId.isEmpty();
+    }
+
+    private void advance(long to) {
+        while (this.tick < to) {
+            if (this.slotted == 0) {
+                // Nothing to cascade, the slots line up with any tick
+                this.tick = to;
+                return;
+            }
+            long tick = ++this.tick;
+            int index = (int) (tick & MASK);
+            for (int level = 1; index == 0 && level < LEVELS; ++level) {
+                index = (int) ((tick >> (BITS * level)) & MASK);
+                this.cascade(level * SLOTS + index);
+            }
+            this.cascade((int) (tick & MASK));
+        }
+    }
+
+    /**
+     * Empties a slot and places its tasks again relative to the current tick.
+     */
+    private void cascade(int slot) {
+        CraftTask task = this.slots[slot];
+        this.slots[slot] = null;
+        while (task != null) {
+            CraftTask next = task.wheelNext;
+            task.wheelPrev = task.wheelNext = null;
+            --this.slotted;
+            this.place(task);
+            task = next;
+        }
+    }
+
+    private void place(CraftTask task) {
+        long nextRun = task.getNextRun();
+        long delta = nextRun - this.tick;
+        if (delta <= 0) {
+            task.wheelSlot = READY;
+            this.ready.add(task);
+            return;
+        }
+        if (delta >= SPAN) {
+            nextRun = this.tick + SPAN - 1;
+            delta = SPAN - 1;
+        }
+        int level = 0;
+        while (delta >= 1L << (BITS * (level + 1))) {
+            ++level;
+        }
+        int slot = level * SLOTS + (int) ((nextRun >> (BITS * level)) & MASK);
+        CraftTask head = this.slots[slot];
+        task.wheelSlot = slot;
+        task.wheelPrev = null;
+        task.wheelNext = head;
+        if (head != null) {
+            head.wheelPrev = task;
+        }
+        this.slots[slot] = task;
+        ++this.slotted;
+    }
+
+    private void unlink(CraftTask task) {
+        int slot = task.wheelSlot;
+        task.wheelSlot = NONE;
+        if (slot == READY) {
+            this.ready.remove(task);
+        } else if (slot != NONE) {
+            if (task.wheelPrev != null) {
+                task.wheelPrev.wheelNext = task.wheelNext;
+            } else {
+                this.slots[slot] = task.wheelNext;
+            }
+            if (task.wheelNext != null) {
+                task.wheelNext.wheelPrev = task.wheelPrev;
+            }
+            task.wheelPrev = task.wheelNext = null;
+            --this.slotted;
+        }
+    }
+}
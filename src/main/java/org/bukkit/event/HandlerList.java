@@ -8,12 +8,18 @@ import java.util.ListIterator;
 import java.util.Map.Entry;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.RegisteredListener;
+import red.mohist.Mohist;
+import red.mohist.common.event.EventDispatcher;
+import red.mohist.common.event.EventDispatcherGenerator;
+import red.mohist.configuration.MohistConfig;
 
 /**
  * A list of event handlers, stored per-event. Based on lahwran's fevents.
  */
 public class HandlerList {
 
+    // Mohist - calls after a bake before the listeners get a generated dispatcher
+    private static final int DISPATCHER_THRESHOLD = 1000;
     /**
      * List of all HandlerLists which have been created, for use in bakeAll()
      */
@@ -29,6 +35,11 @@ public class HandlerList {
      * speed.
      */
     private volatile RegisteredListener[] handlers = null;
+    // Mohist start
+    private volatile EventDispatcher dispatcher = null;
+    private volatile boolean dispatcherGenerated;
+    private int dispatchCalls; // Racy, only has to pass the threshold eventually
+    // Mohist end
 
     /**
      * Create a new handler list and initialize using EventPriority.
@@ -69,6 +80,7 @@ public class HandlerList {
                         list.clear();
                     }
                     h.handlers = null;
+                    h.invalidateDispatcher(); // Mohist
                 }
             }
         }
@@ -147,6 +159,7 @@ public class HandlerList {
             throw new IllegalStateException("This listener is already registered to priority " + listener.getPriority().toString());
         }
         handlers = null;
+        invalidateDispatcher(); // Mohist
         handlerslots.get(listener.getPriority()).add(listener);
     }
 
@@ -169,6 +182,7 @@ public class HandlerList {
     public synchronized void unregister(RegisteredListener listener) {
         if (handlerslots.get(listener.getPriority()).remove(listener)) {
             handlers = null;
+            invalidateDispatcher(); // Mohist
         }
     }
 
@@ -189,6 +203,7 @@ public class HandlerList {
         }
         if (changed) {
             handlers = null;
+            invalidateDispatcher(); // Mohist
         }
     }
 
@@ -209,6 +224,7 @@ public class HandlerList {
         }
         if (changed) {
             handlers = null;
+            invalidateDispatcher(); // Mohist
         }
     }
 
@@ -226,6 +242,58 @@ public class HandlerList {
         handlers = entries.toArray(new RegisteredListener[entries.size()]);
     }
 
+    /**
+     * Checks if any listener is registered, so hot call sites can skip building
+     * an event nobody listens to. Bakes the list first if it changed.
+     *
+     * @return true if calling the event would reach at least one listener
+     */
+    public boolean hasListeners() {
+        return getRegisteredListeners().length != 0;
+    }
+
+    // Mohist start
+    /**
+     * Gets a generated dispatcher that calls the baked listeners with the loop unrolled.
+     * A list only gets one after it was called often enough since it last changed, until
+     * then, and for lists too large to unroll, this returns null and the caller loops over
+     * {@link #getRegisteredListeners()} itself.
+     *
+     * @return the dispatcher of the current listeners, or null
+     */
+    public EventDispatcher getDispatcher() {
+        EventDispatcher dispatcher = this.dispatcher;
+        if (dispatcher == null && !dispatcherGenerated && ++dispatchCalls >= DISPATCHER_THRESHOLD) {
+            dispatcher = generateDispatcher();
+        }
+        return dispatcher;
+    }
+
+    private synchronized EventDispatcher generateDispatcher() {
+        RegisteredListener[] handlers = this.handlers;
+        if (dispatcherGenerated || handlers == null) {
+            // Another thread got here first, or the list changed and is not baked yet
+            return dispatcher;
+        }
+        dispatcherGenerated = true;
+        if (handlers.length == 0 || MohistConfig.instance == null || !MohistConfig.instance.generatedEventDispatcher.getValue()) {
+            return null;
+        }
+        try {
+            dispatcher = EventDispatcherGenerator.create(handlers);
+        } catch (Throwable t) {
+            Mohist.LOGGER.warn("Could not generate an event dispatcher, falling back to the listener loop", t);
+        }
+        return dispatcher;
+    }
+
+    private void invalidateDispatcher() {
+        dispatcher = null;
+        dispatcherGenerated = false;
+        dispatchCalls = 0;
+    }
+    // Mohist end
+
     /**
      * Get the baked registered listeners associated with this handler list
      *
@@ -32,6 +32,7 @@ import org.bukkit.permissions.Permission;
 import org.bukkit.permissions.PermissionDefault;
 import org.bukkit.util.FileUtil;
 import red.mohist.Mohist;
+import red.mohist.common.event.EventDispatcher;
 import red.mohist.util.i18n.Message;
 
 /**
@@ -473,6 +474,13 @@ public final class SimplePluginManager implements PluginManager {
     public void callEvent(Event event) {
         // Paper - replace callEvent by merging to below method
         HandlerList handlers = event.getHandlers();
+        // Mohist start - hot events go through a generated dispatcher
+        EventDispatcher dispatcher = handlers.getDispatcher();
+        if (dispatcher != null) {
+            dispatcher.dispatch(event);
+            return;
+        }
+        // Mohist end
         RegisteredListener[] listeners = handlers.getRegisteredListeners();
 
         for (RegisteredListener registration : listeners) {
@@ -482,21 +490,8 @@ public final class SimplePluginManager implements PluginManager {
 
             try {
                 registration.callEvent(event);
-            } catch (AuthorNagException ex) {
-                Plugin plugin = registration.getPlugin();
-
-                if (plugin.isNaggable()) {
-                    plugin.setNaggable(false);
-
-                    Mohist.LOGGER.error(String.format(
-                            "Nag author(s): '%s' of '%s' about the following: %s",
-                            plugin.getDescription().getAuthors(),
-                            plugin.getDescription().getFullName(),
-                            ex.getMessage()
-                    ));
-                }
             } catch (Throwable ex) {
-                server.getLogger().log(Level.SEVERE, "Could not pass event " + event.getEventName() + " to " + registration.getPlugin().getDescription().getFullName(), ex);
+                EventDispatcher.handleException(registration, event, ex); // Mohist - shared with the generated dispatchers
             }
         }
     }
@@ -6,7 +6,9 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -138,6 +140,20 @@ public class JavaPluginLoader implements PluginLoader {
         return loader.plugin;
     }
 
+    // Mohist start - the remapper looks at the classes of these jars as well
+    List<File> getDependencyFiles(PluginDescriptionFile description) {
+        List<File> files = new ArrayList<>();
+        for (PluginClassLoader loader : loaders) {
+            String name = loader.getDescription().getName();
+            if (description.getDepend().contains(name) || description.getSoftDepend().contains(name)) {
+                files.add(loader.getFile());
+            }
+        }
+        files.sort(Comparator.comparing(File::getPath));
+        return files;
+    }
+    // Mohist end
+
     private File getDataFolder(File file) {
         File dataFolder = null;
         String filename = file.getName();
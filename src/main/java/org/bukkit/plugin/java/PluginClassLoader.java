@@ -8,9 +8,9 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.security.CodeSigner;
 import java.security.CodeSource;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import org.apache.commons.io.IOUtils;
@@ -18,6 +18,8 @@ import org.apache.commons.lang.Validate;
 import org.bukkit.plugin.InvalidPluginException;
 import org.bukkit.plugin.PluginDescriptionFile;
 import red.mohist.common.remap.ClassLoaderContext;
+import red.mohist.common.remap.RemapCache;
+import red.mohist.common.remap.RemapPrefetcher;
 import red.mohist.common.remap.RemapUtils;
 
 /**
@@ -26,17 +28,20 @@ import red.mohist.common.remap.RemapUtils;
 public final class PluginClassLoader extends URLClassLoader {
     final JavaPlugin plugin;
     private final JavaPluginLoader loader;
-    private final Map<String, Class<?>> classes = new HashMap<>();
+    private final Map<String, Class<?>> classes = new ConcurrentHashMap<>(); // Mohist - loaded in parallel
     private final PluginDescriptionFile description;
     private final File dataFolder;
     private final File file;
     private final JarFile jar;
     private final Manifest manifest;
     private final URL url;
+    private final String remapCacheScope; // Mohist
+    private final RemapPrefetcher prefetcher; // Mohist
     private JavaPlugin pluginInit;
     private IllegalStateException pluginState;
 
     static {
+        ClassLoader.registerAsParallelCapable(); // Mohist - lock per class name, so classes of one plugin remap in parallel
         try {
             Class.forName("org.bukkit.PackageDefine");
             Class.forName("org.bukkit.craftbukkit.PackageDefine");
@@ -58,6 +63,8 @@ public final class PluginClassLoader extends URLClassLoader {
         this.jar = new JarFile(file);
         this.manifest = jar.getManifest();
         this.url = file.toURI().toURL();
+        this.remapCacheScope = RemapCache.scope(file, loader.getDependencyFiles(description)); // Mohist
+        this.prefetcher = RemapPrefetcher.start(this, jar, description, remapCacheScope); // Mohist
 
         try {
             Class<?> jarClass;
@@ -100,25 +107,28 @@ public final class PluginClassLoader extends URLClassLoader {
                 throw new ClassNotFoundException(name);
             }
             result = classes.get(name);
-            synchronized (name.intern()) {
-                if (result == null) {
-                    if (checkGlobal) {
-                        result = loader.getClassByName(name);
-                    }
-
+            if (result == null) {
+                synchronized (name.intern()) {
+                    result = classes.get(name); // Mohist - another thread may have defined it while this one waited
                     if (result == null) {
-                        result = remappedFindClass(name);
+                        if (checkGlobal) {
+                            result = loader.getClassByName(name);
+                        }
+
+                        if (result == null) {
+                            result = remappedFindClass(name);
 
-                        if (result != null) {
-                            loader.setClass(name, result);
+                            if (result != null) {
+                                loader.setClass(name, result);
+                            }
                         }
-                    }
 
-                    if (result == null) {
-                        throw new ClassNotFoundException(name);
-                    }
+                        if (result == null) {
+                            throw new ClassNotFoundException(name);
+                        }
 
-                    classes.put(name, result);
+                        classes.put(name, result);
+                    }
                 }
             }
         } finally {
@@ -132,6 +142,11 @@ public final class PluginClassLoader extends URLClassLoader {
         try {
             super.close();
         } finally {
+            // Mohist start
+            if (prefetcher != null) {
+                prefetcher.cancel();
+            }
+            // Mohist end
             jar.close();
         }
     }
@@ -164,8 +179,13 @@ public final class PluginClassLoader extends URLClassLoader {
                 InputStream stream = url.openStream();
                 if (stream != null) {
 //                  remap
-                    byte[] bytecode = IOUtils.toByteArray(stream);
-                    bytecode = RemapUtils.remapFindClass(description, name, bytecode);
+                    // Mohist start - remapped ahead on the prefetch pool
+                    byte[] bytecode = prefetcher == null ? null : prefetcher.take(name);
+                    if (bytecode == null) {
+                        bytecode = IOUtils.toByteArray(stream);
+                        bytecode = RemapUtils.remapFindClass(description, name, bytecode, remapCacheScope); // cached
+                    }
+                    // Mohist end
                     // Define (create) the class using the modified byte code
                     // The top-child class loader is used for this to prevent access violations
                     // Set the codesource to the jar, not within the jar, for compatibility with
@@ -192,4 +212,8 @@ public final class PluginClassLoader extends URLClassLoader {
     public PluginDescriptionFile getDescription() {
         return description;
     }
+
+    File getFile() {
+        return file;
+    }
 }
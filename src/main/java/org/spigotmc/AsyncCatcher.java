@@ -1,19 +1,34 @@
 package org.spigotmc;
 
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.World;
+import red.mohist.common.async.ParallelWorldTicker;
 
 public class AsyncCatcher {
 
     public static boolean enabled = true;
 
     public static void catchOp(String reason) {
-        if (enabled && Thread.currentThread() != MinecraftServer.getServerInst().primaryThread) {
+        if (enabled && !isPrimaryThread()) {
             //throw new IllegalStateException("Asynchronous " + reason + "!");
         }
     }
 
+    // Mohist start - parallel world ticking
+    public static void catchOp(String reason, World world) {
+        catchOp(reason);
+        if (enabled && !ParallelWorldTicker.ownsWorld(world)) {
+            throw new IllegalStateException("Cross-world " + reason + " from " + ParallelWorldTicker.getOwnedWorld().getWorldInfo().getWorldName() + " to " + world.getWorldInfo().getWorldName() + "!");
+        }
+    }
+
+    private static boolean isPrimaryThread() {
+        return Thread.currentThread() == MinecraftServer.getServerInst().primaryThread || ParallelWorldTicker.isWorldThread();
+    }
+    // Mohist end
+
     public static boolean catchInv() {
-        if (enabled && Thread.currentThread() != MinecraftServer.getServerInst().primaryThread) {
+        if (enabled && !isPrimaryThread()) {
             return true;
         }
         return false;
@@ -6,6 +6,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.command.defaults.TimingsCommand;
+import red.mohist.common.timings.TimingsEngine;
 
 /**
  * Provides custom timing sections for /timings merged.
@@ -17,12 +18,7 @@ public class CustomTimingsHandler
     /*========================================================================*/
     private final String name;
     private final CustomTimingsHandler parent;
-    private long count = 0;
-    private long start = 0;
-    private long timingDepth = 0;
-    private long totalTime = 0;
-    private long curTickTotal = 0;
-    private long violations = 0;
+    private final int id; // Mohist - data lives in TimingsEngine
 
     public CustomTimingsHandler(String name)
     {
@@ -33,6 +29,7 @@ public class CustomTimingsHandler
     {
         this.name = name;
         this.parent = parent;
+        this.id = TimingsEngine.register( this ); // Mohist
         HANDLERS.add( this );
     }
 
@@ -46,15 +43,17 @@ public class CustomTimingsHandler
         printStream.println( "Minecraft" );
         for ( CustomTimingsHandler timings : HANDLERS )
         {
-            long time = timings.totalTime;
-            long count = timings.count;
+            // Mohist start
+            long time = TimingsEngine.getTotal( timings.id );
+            long count = TimingsEngine.getCount( timings.id );
+            // Mohist end
             if ( count == 0 )
             {
                 continue;
             }
             long avg = time / count;
 
-            printStream.println( "    " + timings.name + " Time: " + time + " Count: " + count + " Avg: " + avg + " Violations: " + timings.violations );
+            printStream.println( "    " + timings.name + " Time: " + time + " Count: " + count + " Avg: " + avg + " Violations: " + TimingsEngine.getViolations( timings.id ) ); // Mohist
         }
         printStream.println( "# Version " + Bukkit.getVersion() );
         int entities = 0;
@@ -75,10 +74,7 @@ public class CustomTimingsHandler
     {
         if ( Bukkit.getPluginManager().useTimings() )
         {
-            for ( CustomTimingsHandler timings : HANDLERS )
-            {
-                timings.reset();
-            }
+            TimingsEngine.reset(); // Mohist
         }
         TimingsCommand.timingStart = System.nanoTime();
     }
@@ -91,15 +87,7 @@ public class CustomTimingsHandler
     {
         if ( Bukkit.getPluginManager().useTimings() )
         {
-            for ( CustomTimingsHandler timings : HANDLERS )
-            {
-                if ( timings.curTickTotal > 50000000 )
-                {
-                    timings.violations += Math.ceil( timings.curTickTotal / 50000000 );
-                }
-                timings.curTickTotal = 0;
-                timings.timingDepth = 0; // incase reset messes this up
-            }
+            TimingsEngine.tick(); // Mohist
         }
     }
 
@@ -108,14 +96,9 @@ public class CustomTimingsHandler
      */
     public void startTiming()
     {
-        // If second condtion fails we are already timing
-        if ( Bukkit.getPluginManager().useTimings() && ++timingDepth == 1 )
+        if ( Bukkit.getPluginManager().useTimings() )
         {
-            start = System.nanoTime();
-            if ( parent != null && ++parent.timingDepth == 1 )
-            {
-                parent.start = start;
-            }
+            TimingsEngine.start( id, parent == null ? -1 : parent.id ); // Mohist
         }
     }
 
@@ -126,32 +109,47 @@ public class CustomTimingsHandler
     {
         if ( Bukkit.getPluginManager().useTimings() )
         {
-            if ( --timingDepth != 0 || start == 0 )
-            {
-                return;
-            }
-            long diff = System.nanoTime() - start;
-            totalTime += diff;
-            curTickTotal += diff;
-            count++;
-            start = 0;
-            if ( parent != null )
-            {
-                parent.stopTiming();
-            }
+            TimingsEngine.stop( id, parent == null ? -1 : parent.id ); // Mohist
+        }
+    }
+
+    /**
+     * Adds a section that was timed off the main thread. It is not counted
+     * towards the tick violations.
+     */
+    public void addTiming(long diff)
+    {
+        if ( Bukkit.getPluginManager().useTimings() )
+        {
+            TimingsEngine.add( id, diff ); // Mohist
         }
     }
 
     /**
      * Reset this timer, setting all values to zero.
+     *
+     * @deprecated timings are kept per thread and can only be reset all at once, see {@link #reload()}
      */
+    @Deprecated
     public void reset()
     {
-        count = 0;
-        violations = 0;
-        curTickTotal = 0;
-        totalTime = 0;
-        start = 0;
-        timingDepth = 0;
+        // Mohist - does nothing, resetting every handler here would race with tick()
+    }
+
+    // Mohist start
+    public String getName()
+    {
+        return name;
+    }
+
+    public CustomTimingsHandler getParent()
+    {
+        return parent;
+    }
+
+    public int getId()
+    {
+        return id;
     }
+    // Mohist end
 }
@@ -281,4 +281,15 @@ public class SpigotWorldConfig {
     private void squidSpawnRange() {
         squidSpawnRangeMin = getDouble("squid-spawn-range.min", 45.0D);
     }
+
+    // Mohist start - region file compression codec
+    public String chunkCompression;
+    private void chunkCompression() {
+        chunkCompression = getString("chunk-compression", "zlib");
+        if (red.mohist.common.chunk.ChunkCodec.byNameOrNull(chunkCompression) == null) {
+            Mohist.LOGGER.warn("Unknown chunk-compression " + chunkCompression + ", valid are " + red.mohist.common.chunk.ChunkCodec.names() + ". Using zlib");
+            chunkCompression = "zlib";
+        }
+    }
+    // Mohist end
 }
@@ -0,0 +1,46 @@
+package red.mohist.command;
+
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.storage.AnvilChunkLoader;
+import net.minecraft.world.chunk.storage.IChunkLoader;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.bukkit.craftbukkit.v1_12_R1.CraftWorld;
+import red.mohist.common.chunk.ChunkCodec;
+import red.mohist.common.chunk.RegionConverter;
+
+public class ConvertRegionsCommand {
+
+    public static void convert(CommandSender sender, String worldName, String codecName) {
+        World world = Bukkit.getWorld(worldName);
+        if (world == null) {
+            sender.sendMessage(ChatColor.RED + "The world [" + worldName + "] is not loaded.");
+            return;
+        }
+        ChunkCodec codec = ChunkCodec.byNameOrNull(codecName);
+        if (codec == null) {
+            sender.sendMessage(ChatColor.RED + "Unknown codec [" + codecName + "], valid are " + ChunkCodec.names() + ".");
+            return;
+        }
+        WorldServer handle = ((CraftWorld) world).getHandle();
+        IChunkLoader chunkLoader = handle.getChunkProvider().chunkLoader;
+        if (!(chunkLoader instanceof AnvilChunkLoader)) {
+            sender.sendMessage(ChatColor.RED + "The world [" + worldName + "] does not use region files.");
+            return;
+        }
+        AnvilChunkLoader anvilChunkLoader = (AnvilChunkLoader) chunkLoader;
+        // New saves use the target codec as well, otherwise they would undo the conversion chunk by chunk
+        anvilChunkLoader.codec = codec;
+        boolean started = RegionConverter.start(anvilChunkLoader.chunkSaveLocation, codec, message -> sender.sendMessage(ChatColor.GRAY + "[" + worldName + "] " + ChatColor.GREEN + message));
+        if (!started) {
+            sender.sendMessage(ChatColor.RED + "A region conversion is already running.");
+            return;
+        }
+        sender.sendMessage(ChatColor.GOLD + "Converting the region files of " + worldName + " to " + codec.getName() + " in the background.");
+        if (!codec.getName().equals(handle.spigotConfig.chunkCompression)) {
+            sender.sendMessage(ChatColor.GOLD + "Set world-settings." + worldName + ".chunk-compression to " + codec.getName() + " in spigot.yml to keep it after a restart.");
+        }
+    }
+}
@@ -12,6 +12,7 @@ import org.bukkit.entity.Player;
 import red.mohist.MohistThreadCost;
 import red.mohist.api.PlayerAPI;
 import red.mohist.api.ServerAPI;
+import red.mohist.common.chunk.ChunkCodec;
 import red.mohist.util.i18n.Message;
 
 public class MohistCommand extends Command {
@@ -19,10 +20,10 @@ public class MohistCommand extends Command {
     public MohistCommand(String name) {
         super(name);
         this.description = "Mohist related commands";
-        this.usageMessage = "/mohist [mods|playermods|printthreadcost|lang|item]";
+        this.usageMessage = "/mohist [mods|playermods|printthreadcost|lang|item|saveinfo|convertregions|network|netbench|pregen|scheduler]";
     }
 
-    private List<String> params = Arrays.asList("mods", "playermods", "printthreadcost", "lang", "item");
+    private List<String> params = Arrays.asList("mods", "playermods", "printthreadcost", "lang", "item", "saveinfo", "convertregions", "network", "netbench", "pregen", "scheduler");
 
     @Override
     public List<String> tabComplete(CommandSender sender, String alias, String[] args) throws IllegalArgumentException {
@@ -74,6 +75,28 @@ public class MohistCommand extends Command {
             case "lang":
                 sender.sendMessage(ChatColor.GREEN +ServerAPI.getLanguage());
                 break;
+            case "saveinfo":
+                SaveInfoCommand.info(sender);
+                break;
+            case "network":
+                NetworkCommand.info(sender);
+                break;
+            case "netbench":
+                NetworkCommand.bench(sender, args);
+                break;
+            case "pregen":
+                PregenCommand.execute(sender, args);
+                break;
+            case "scheduler":
+                SchedulerCommand.execute(sender, args);
+                break;
+            case "convertregions":
+                if (args.length < 3) {
+                    sender.sendMessage(ChatColor.RED + "Usage: /mohist convertregions <world> <" + ChunkCodec.names() + ">");
+                    return false;
+                }
+                ConvertRegionsCommand.convert(sender, args[1], args[2]);
+                break;
             case "item":
                 if ("info".equals(args[1].toLowerCase(Locale.ENGLISH))){
                     ItemCommand.info(sender);
@@ -0,0 +1,64 @@
+package red.mohist.command;
+
+import net.minecraft.entity.player.EntityPlayerMP;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.craftbukkit.v1_12_R1.entity.CraftPlayer;
+import org.bukkit.entity.Player;
+import red.mohist.common.network.FlushCoalescingHandler;
+import red.mohist.common.network.NetworkLoadTest;
+import red.mohist.configuration.MohistConfig;
+
+public class NetworkCommand {
+
+    public static void info(CommandSender sender) {
+        if (!MohistConfig.instance.flushCoalescing.getValue()) {
+            sender.sendMessage(ChatColor.RED + "Flush coalescing is disabled (perfomance.flushCoalescing is false).");
+            return;
+        }
+        long writes = 0;
+        long flushes = 0;
+        long bytes = 0;
+        sender.sendMessage(ChatColor.GOLD + "Connection flushes:");
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            EntityPlayerMP handle = ((CraftPlayer) player).getHandle();
+            FlushCoalescingHandler handler = handle.connection == null ? null : handle.connection.netManager.getFlushCoalescing();
+            if (handler == null) {
+                continue;
+            }
+            writes += handler.getWrites();
+            flushes += handler.getFlushes();
+            bytes += handler.getBytes();
+            sender.sendMessage(ChatColor.GRAY + player.getName() + " - " + format(handler.getWrites(), handler.getFlushes(), handler.getBytes())
+                    + ChatColor.GRAY + ", " + ChatColor.GREEN + handle.getServerWorld().getPlayerChunkMap().getQueuedChunks(handle) + ChatColor.GRAY + " chunks queued");
+        }
+        sender.sendMessage(ChatColor.GRAY + "Total - " + format(writes, flushes, bytes));
+    }
+
+    public static void bench(CommandSender sender, String[] args) {
+        int clients = 100;
+        if (args.length > 1) {
+            try {
+                clients = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                clients = -1;
+            }
+        }
+        if (clients < 1 || clients > NetworkLoadTest.MAX_CLIENTS) {
+            sender.sendMessage(ChatColor.RED + "Usage: /mohist netbench [clients, 1-" + NetworkLoadTest.MAX_CLIENTS + "]");
+            return;
+        }
+        String host = Bukkit.getIp().isEmpty() ? "127.0.0.1" : Bukkit.getIp();
+        if (!NetworkLoadTest.start(sender, host, Bukkit.getPort(), clients)) {
+            sender.sendMessage(ChatColor.RED + "A network load test is already running.");
+        }
+    }
+
+    private static String format(long writes, long flushes, long bytes) {
+        return ChatColor.GREEN + "" + writes + ChatColor.GRAY + " writes, "
+                + ChatColor.GREEN + flushes + ChatColor.GRAY + " flushes ("
+                + ChatColor.GREEN + String.format("%.1f", flushes == 0 ? 0D : (double) writes / flushes) + ChatColor.GRAY + " writes/flush), "
+                + ChatColor.GREEN + (bytes >> 10) + ChatColor.GRAY + " KiB";
+    }
+}
@@ -0,0 +1,121 @@
+package red.mohist.command;
+
+import java.io.IOException;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.WorldServer;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.bukkit.craftbukkit.v1_12_R1.CraftWorld;
+import red.mohist.common.chunk.WorldPregenerator;
+
+public class PregenCommand {
+
+    private static final String USAGE = "Usage: /mohist pregen <start|resume|pause|cancel|status> [world] [radius] [centerX centerZ]";
+    public static final int MAX_RADIUS = 10000;
+
+    public static void execute(CommandSender sender, String[] args) {
+        if (args.length < 2) {
+            sender.sendMessage(ChatColor.RED + USAGE);
+            return;
+        }
+        String action = args[1].toLowerCase();
+        if ("status".equals(action)) {
+            status(sender);
+            return;
+        }
+        if (args.length < 3) {
+            sender.sendMessage(ChatColor.RED + USAGE);
+            return;
+        }
+        World world = Bukkit.getWorld(args[2]);
+        if (world == null) {
+            sender.sendMessage(ChatColor.RED + "The world [" + args[2] + "] is not loaded.");
+            return;
+        }
+        WorldServer handle = ((CraftWorld) world).getHandle();
+        WorldPregenerator running = WorldPregenerator.get(handle);
+        try {
+            switch (action) {
+                case "start":
+                    if (running != null) {
+                        sender.sendMessage(ChatColor.RED + "The world [" + world.getName() + "] is already being pregenerated.");
+                        return;
+                    }
+                    start(sender, handle, args);
+                    break;
+                case "resume":
+                    if (running != null) {
+                        sender.sendMessage(ChatColor.RED + "The world [" + world.getName() + "] is already being pregenerated.");
+                        return;
+                    }
+                    WorldPregenerator resumed = WorldPregenerator.resume(handle);
+                    if (resumed == null) {
+                        sender.sendMessage(ChatColor.RED + "The world [" + world.getName() + "] has no saved pregeneration progress.");
+                        return;
+                    }
+                    sender.sendMessage(ChatColor.GOLD + "Resumed pregenerating " + world.getName() + ": " + ChatColor.GRAY + resumed.getStatus());
+                    break;
+                case "pause":
+                case "cancel":
+                    if (running == null) {
+                        sender.sendMessage(ChatColor.RED + "The world [" + world.getName() + "] is not being pregenerated.");
+                        return;
+                    }
+                    if ("pause".equals(action)) {
+                        running.pause();
+                        sender.sendMessage(ChatColor.GOLD + "Paused pregenerating " + world.getName() + ", continue with /mohist pregen resume " + world.getName() + ".");
+                    } else {
+                        running.cancel();
+                        sender.sendMessage(ChatColor.GOLD + "Cancelled pregenerating " + world.getName() + ".");
+                    }
+                    break;
+                default:
+                    sender.sendMessage(ChatColor.RED + USAGE);
+            }
+        } catch (IOException e) {
+            sender.sendMessage(ChatColor.RED + "Pregeneration of " + world.getName() + " failed: " + e.getMessage());
+        }
+    }
+
+    private static void start(CommandSender sender, WorldServer world, String[] args) throws IOException {
+        int radius;
+        int centerX;
+        int centerZ;
+        try {
+            radius = Integer.parseInt(args[3]);
+            if (args.length > 5) {
+                centerX = Integer.parseInt(args[4]);
+                centerZ = Integer.parseInt(args[5]);
+            } else {
+                BlockPos spawn = world.getSpawnPoint();
+                centerX = spawn.getX() >> 4;
+                centerZ = spawn.getZ() >> 4;
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            radius = -1;
+            centerX = centerZ = 0;
+        }
+        if (radius < 1 || radius > MAX_RADIUS) {
+            sender.sendMessage(ChatColor.RED + "Usage: /mohist pregen start <world> <radius in chunks, 1-" + MAX_RADIUS + "> [centerX centerZ in chunks]");
+            return;
+        }
+        WorldPregenerator pregenerator = WorldPregenerator.start(world, centerX, centerZ, radius);
+        sender.sendMessage(ChatColor.GOLD + "Pregenerating " + pregenerator.getWorldName() + " " + radius + " chunks around chunk " + centerX + ", " + centerZ + ".");
+    }
+
+    private static void status(CommandSender sender) {
+        boolean any = false;
+        for (World world : Bukkit.getWorlds()) {
+            WorldPregenerator pregenerator = WorldPregenerator.get(((CraftWorld) world).getHandle());
+            if (pregenerator != null) {
+                any = true;
+                sender.sendMessage(ChatColor.GRAY + world.getName() + " - " + ChatColor.GREEN + pregenerator.getStatus());
+            }
+        }
+        if (!any) {
+            sender.sendMessage(ChatColor.GRAY + "No world is being pregenerated.");
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package red.mohist.command;
+
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import red.mohist.common.chunk.ChunkSavePipeline;
+
+public class SaveInfoCommand {
+
+    public static void info(CommandSender sender) {
+        if (!ChunkSavePipeline.isEnabled()) {
+            sender.sendMessage(ChatColor.RED + "The chunk save pipeline is disabled (world.chunkSaveThreads is 0).");
+            return;
+        }
+        sender.sendMessage(ChatColor.GOLD + "Chunk save pipeline:");
+        sender.sendMessage(ChatColor.GRAY + "In flight - " + ChatColor.GREEN + ChunkSavePipeline.getInFlight()
+                + ChatColor.GRAY + " (compress: " + ChatColor.GREEN + ChunkSavePipeline.getAwaitingCompression()
+                + ChatColor.GRAY + ", write: " + ChatColor.GREEN + ChunkSavePipeline.getAwaitingWrite() + ChatColor.GRAY + ")");
+        sender.sendMessage(ChatColor.GRAY + "Throughput - " + ChatColor.GREEN + String.format("%.1f", ChunkSavePipeline.getThroughput(10)) + ChatColor.GRAY + " chunks/s (10s), "
+                + ChatColor.GREEN + String.format("%.1f", ChunkSavePipeline.getThroughput(60)) + ChatColor.GRAY + " chunks/s (60s)");
+        sender.sendMessage(ChatColor.GRAY + "Saved - " + ChatColor.GREEN + ChunkSavePipeline.getCompleted() + "/" + ChunkSavePipeline.getSubmitted()
+                + ChatColor.GRAY + ", failed: " + ChatColor.GREEN + ChunkSavePipeline.getFailed()
+                + ChatColor.GRAY + ", written: " + ChatColor.GREEN + (ChunkSavePipeline.getBytesWritten() >> 20) + " MiB");
+        sender.sendMessage(ChatColor.GRAY + "Back-pressure waits - " + ChatColor.GREEN + ChunkSavePipeline.getBackpressureWaits());
+    }
+}
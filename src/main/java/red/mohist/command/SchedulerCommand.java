@@ -0,0 +1,95 @@
+package red.mohist.command;
+
+import java.util.Comparator;
+import java.util.List;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import red.mohist.common.async.FairTaskPool;
+import red.mohist.common.async.MohistThreadBox;
+import red.mohist.common.scheduler.SyncTaskStats;
+import red.mohist.configuration.MohistConfig;
+
+public class SchedulerCommand {
+
+    private static final int MAX_LINES = 15;
+
+    public static void execute(CommandSender sender, String[] args) {
+        if (args.length > 1 && "reset".equalsIgnoreCase(args[1])) {
+            SyncTaskStats.reset();
+            MohistThreadBox.ASYNC_POOL.resetStats();
+            sender.sendMessage(ChatColor.GOLD + "Reset the task statistics.");
+            return;
+        }
+        if (args.length > 1 && "async".equalsIgnoreCase(args[1])) {
+            async(sender);
+            return;
+        }
+        if (args.length > 1) {
+            sender.sendMessage(ChatColor.RED + "Usage: /mohist scheduler [async|reset]");
+            return;
+        }
+        int budget = MohistConfig.instance.syncTaskBudgetMicros.getValue();
+        sender.sendMessage(ChatColor.GOLD + "Sync tasks, " + (budget > 0 ? "budget " + budget + " us per tick, " + SyncTaskStats.getDeferredTicks() + " ticks deferred tasks" : "no budget (perfomance.syncTaskBudgetMicros is 0)") + ":");
+        List<SyncTaskStats> all = SyncTaskStats.getAll();
+        if (all.isEmpty()) {
+            sender.sendMessage(ChatColor.GRAY + "No task has run yet.");
+            return;
+        }
+        all.sort(Comparator.comparingLong(SyncTaskStats::getNanos).reversed());
+        for (int i = 0; i < all.size() && i < MAX_LINES; ++i) {
+            SyncTaskStats stats = all.get(i);
+            sender.sendMessage(ChatColor.GRAY + stats.getPlugin().getName() + " - "
+                    + ChatColor.GREEN + stats.getRuns() + ChatColor.GRAY + " runs, "
+                    + ChatColor.GREEN + String.format("%.2f", stats.getNanos() / 1e6) + ChatColor.GRAY + " ms total, "
+                    + ChatColor.GREEN + String.format("%.2f", stats.getMaxNanos() / 1e6) + ChatColor.GRAY + " ms max, "
+                    + ChatColor.GREEN + stats.getDeferred() + ChatColor.GRAY + " deferred, late p50/p95/p99 "
+                    + ChatColor.GREEN + late(stats, 50) + "/" + late(stats, 95) + "/" + late(stats, 99) + ChatColor.GRAY + " ticks");
+            sender.sendMessage(ChatColor.DARK_GRAY + "  late " + histogram(stats.getLateHistogram()));
+        }
+        if (all.size() > MAX_LINES) {
+            sender.sendMessage(ChatColor.GRAY + "... and " + (all.size() - MAX_LINES) + " more plugins");
+        }
+    }
+
+    private static void async(CommandSender sender) {
+        FairTaskPool pool = MohistThreadBox.ASYNC_POOL;
+        sender.sendMessage(ChatColor.GOLD + "Async task pool, " + ChatColor.GREEN + pool.getBusyThreads() + "/" + pool.getLiveThreads()
+                + ChatColor.GOLD + " threads busy (" + FairTaskPool.getCoreThreads() + " core, " + FairTaskPool.getMaxThreads() + " max), "
+                + ChatColor.GREEN + pool.getQueued() + ChatColor.GOLD + " tasks queued:");
+        List<FairTaskPool.Stats> all = pool.getStats();
+        if (all.isEmpty()) {
+            sender.sendMessage(ChatColor.GRAY + "No task has run yet.");
+            return;
+        }
+        all.sort(Comparator.comparingLong((FairTaskPool.Stats stats) -> stats.waitNanos).reversed());
+        for (int i = 0; i < all.size() && i < MAX_LINES; ++i) {
+            FairTaskPool.Stats stats = all.get(i);
+            sender.sendMessage(ChatColor.GRAY + stats.name + " - "
+                    + ChatColor.GREEN + stats.queued + ChatColor.GRAY + " queued, "
+                    + ChatColor.GREEN + stats.running + ChatColor.GRAY + " running, "
+                    + ChatColor.GREEN + stats.completed + "/" + stats.submitted + ChatColor.GRAY + " done, wait avg/max "
+                    + ChatColor.GREEN + String.format("%.2f/%.2f", stats.completed == 0 ? 0D : stats.waitNanos / 1e6 / stats.completed, stats.maxWaitNanos / 1e6) + ChatColor.GRAY + " ms, run "
+                    + ChatColor.GREEN + String.format("%.1f", stats.runNanos / 1e6) + ChatColor.GRAY + " ms total");
+        }
+        if (all.size() > MAX_LINES) {
+            sender.sendMessage(ChatColor.GRAY + "... and " + (all.size() - MAX_LINES) + " more");
+        }
+    }
+
+    private static String late(SyncTaskStats stats, double percentile) {
+        int bound = stats.getLatePercentile(percentile);
+        return bound < 0 ? ">" + SyncTaskStats.LATE_BOUNDS[SyncTaskStats.LATE_BOUNDS.length - 1] : "<=" + bound;
+    }
+
+    private static String histogram(long[] buckets) {
+        StringBuilder builder = new StringBuilder();
+        int[] bounds = SyncTaskStats.LATE_BOUNDS;
+        for (int i = 0; i < buckets.length; ++i) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(i < bounds.length ? (i == 0 ? "0" : "<=" + bounds[i]) : ">" + bounds[bounds.length - 1]).append(": ").append(buckets[i]);
+        }
+        return builder.toString();
+    }
+}
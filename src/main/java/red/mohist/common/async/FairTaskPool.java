@@ -0,0 +1,447 @@
+package red.mohist.common.async;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.bukkit.plugin.Plugin;
+import red.mohist.Mohist;
+import red.mohist.configuration.MohistConfig;
+
+/**
+ * A bounded thread pool shared by the async Bukkit scheduler and the server's own background
+ * work, with one queue per owner (a plugin, or a name like "Async Chat"). Idle workers take
+ * the next owner from a round robin list and run one of its tasks, so a plugin queueing
+ * thousands of tasks only delays the others by one task per round. An owner runs at most
+ * its own limit of tasks at once.
+ * <p>
+ * Up to perfomance.asyncPoolThreads workers are started as tasks come in. Plugins block in
+ * their async tasks, so when tasks have been waiting for perfomance.asyncPoolGrowMillis
+ * while every worker is busy, the pool grows, up to perfomance.asyncPoolMaxThreads. Workers
+ * idle for {@link #KEEP_ALIVE_SECONDS} exit again.
+ * <p>
+ * Owners are kept for their stats until {@link #remove} lets go of them, which the async
+ * scheduler does when a plugin is disabled, so the pool holds no reference to its class loader.
+ */
+public class FairTaskPool {
+
+    private static final long KEEP_ALIVE_SECONDS = 30L;
+    private static final int MIN_THREADS = 4;
+
+    private final ThreadFactory factory;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition work = this.lock.newCondition();
+    private final Condition timer = this.lock.newCondition();
+    private final Condition drained = this.lock.newCondition();
+    // Owners with queued tasks and room to run one more, in the order they get a worker
+    private final ArrayDeque<Owner> ready = new ArrayDeque<>();
+    private final Map<Object, Owner> owners = new HashMap<>();
+    private int threads;
+    private int idle;
+    private int queued;
+    private Thread monitor;
+
+    public FairTaskPool(String name) {
+        this.factory = new NamedThreadFactory(name);
+    }
+
+    public static int getCoreThreads() {
+        int threads = MohistConfig.instance == null ? 0 : MohistConfig.instance.asyncPoolThreads.getValue();
+        return threads > 0 ? threads : Math.max(MIN_THREADS, Runtime.getRuntime().availableProcessors());
+    }
+
+    public static int getMaxThreads() {
+        return Math.max(getCoreThreads(), MohistConfig.instance == null ? 256 : MohistConfig.instance.asyncPoolMaxThreads.getValue());
+    }
+
+    private static int getMaxPerOwner() {
+        int max = MohistConfig.instance == null ? 0 : MohistConfig.instance.asyncPoolMaxPerPlugin.getValue();
+        return max > 0 ? max : Math.max(1, getMaxThreads() / 2);
+    }
+
+    private static long getGrowNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(MohistConfig.instance == null ? 50 : Math.max(1, MohistConfig.instance.asyncPoolGrowMillis.getValue()));
+    }
+
+    public void execute(Plugin plugin, Runnable task) {
+        this.execute(plugin, plugin.getName(), 0, task);
+    }
+
+    /**
+     * @param maxRunning tasks of this owner that may run at once, 0 for the default
+     */
+    public void execute(Object key, String name, int maxRunning, Runnable task) {
+        this.lock.lock();
+        try {
+            Owner owner = this.owners.get(key);
+            if (owner == null) {
+                owner = new Owner(key, name, maxRunning);
+                this.owners.put(key, owner);
+            }
+            owner.removed = false;
+            owner.queue.addLast(new Task(task));
+            ++owner.submitted;
+            ++this.queued;
+            this.makeReady(owner);
+            if (this.idle > 0) {
+                this.work.signal();
+            } else if (this.threads < getCoreThreads()) {
+                this.startWorker();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets the owner once its queued and running tasks are done. Submitting again adds it anew.
+     */
+    public void remove(Object key) {
+        this.lock.lock();
+        try {
+            Owner owner = this.owners.get(key);
+            if (owner != null) {
+                owner.removed = true;
+                this.removeIfDrained(owner);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private void removeIfDrained(Owner owner) {
+        if (owner.queue.isEmpty() && owner.running == 0) {
+            this.drained.signalAll();
+            if (owner.removed) {
+                this.owners.remove(owner.key, owner);
+            }
+        }
+    }
+
+    /**
+     * @return an ExecutorService running its tasks in this pool as the given owner, shutting it down only stops this owner
+     */
+    public ExecutorService executor(String name, int maxRunning) {
+        return new OwnerExecutor(name, maxRunning);
+    }
+
+    private void makeReady(Owner owner) {
+        if (!owner.ready && !owner.queue.isEmpty() && owner.running < owner.getMaxRunning()) {
+            owner.ready = true;
+            this.ready.addLast(owner);
+        }
+    }
+
+    private void startWorker() {
+        ++this.threads;
+        Thread thread = this.factory.newThread(this::work);
+        thread.setDaemon(true);
+        thread.start();
+        if (this.monitor == null) {
+            this.monitor = this.factory.newThread(this::monitor);
+            this.monitor.setName("Mohist Async Pool Monitor");
+            this.monitor.setDaemon(true);
+            this.monitor.start();
+        }
+    }
+
+    private void work() {
+        Owner owner = null;
+        long waitNanos = 0;
+        long runNanos = 0;
+        while (true) {
+            Task task;
+            this.lock.lock();
+            try {
+                if (owner != null) {
+                    owner.record(waitNanos, runNanos);
+                    --owner.running;
+                    this.makeReady(owner);
+                    this.removeIfDrained(owner);
+                }
+                owner = this.ready.pollFirst();
+                while (owner == null) {
+                    ++this.idle;
+                    boolean timedOut;
+                    try {
+                        timedOut = !this.work.await(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        timedOut = true;
+                    } finally {
+                        --this.idle;
+                    }
+                    owner = this.ready.pollFirst();
+                    if (owner == null && timedOut) {
+                        --this.threads;
+                        return;
+                    }
+                }
+                owner.ready = false;
+                task = owner.queue.pollFirst();
+                --this.queued;
+                ++owner.running;
+                this.makeReady(owner);
+                if (!this.ready.isEmpty() && this.idle > 0) {
+                    // Signals can fold into one, pass the work on
+                    this.work.signal();
+                }
+            } finally {
+                this.lock.unlock();
+            }
+
+            long start = System.nanoTime();
+            try {
+                task.runnable.run();
+            } catch (Throwable t) {
+                Mohist.LOGGER.warn("Async task of " + owner.name + " threw an exception", t);
+            }
+            waitNanos = start - task.submitted;
+            runNanos = System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Adds a worker when the task at the front has waited too long while no worker was idle.
+     */
+    private void monitor() {
+        this.lock.lock();
+        try {
+            while (true) {
+                long grow = getGrowNanos();
+                try {
+                    this.timer.awaitNanos(grow);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                Owner next = this.ready.peekFirst();
+                if (next != null && this.idle == 0 && this.threads < getMaxThreads()
+                        && System.nanoTime() - next.queue.peekFirst().submitted >= grow) {
+                    this.startWorker();
+                }
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public int getLiveThreads() {
+        this.lock.lock();
+        try {
+            return this.threads;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public int getBusyThreads() {
+        this.lock.lock();
+        try {
+            return this.threads - this.idle;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        this.lock.lock();
+        try {
+            return this.queued;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public List<Stats> getStats() {
+        this.lock.lock();
+        try {
+            List<Stats> stats = new ArrayList<>(this.owners.size());
+            for (Owner owner : this.owners.values()) {
+                stats.add(new Stats(owner));
+            }
+            return stats;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    public void resetStats() {
+        this.lock.lock();
+        try {
+            for (Owner owner : this.owners.values()) {
+                owner.submitted = owner.completed = owner.waitNanos = owner.maxWaitNanos = owner.runNanos = 0;
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private static class Task {
+
+        private final Runnable runnable;
+        private final long submitted = System.nanoTime();
+
+        private Task(Runnable runnable) {
+            this.runnable = runnable;
+        }
+    }
+
+    private static class Owner {
+
+        private final Object key;
+        private final String name;
+        private final int maxRunning;
+        private final ArrayDeque<Task> queue = new ArrayDeque<>();
+        private boolean ready;
+        private boolean removed;
+        private int running;
+        private long submitted;
+        private long completed;
+        private long waitNanos;
+        private long maxWaitNanos;
+        private long runNanos;
+
+        private Owner(Object key, String name, int maxRunning) {
+            this.key = key;
+            this.name = name;
+            this.maxRunning = maxRunning;
+        }
+
+        private int getMaxRunning() {
+            return this.maxRunning > 0 ? this.maxRunning : getMaxPerOwner();
+        }
+
+        private void record(long waitNanos, long runNanos) {
+            ++this.completed;
+            this.waitNanos += waitNanos;
+            this.maxWaitNanos = Math.max(this.maxWaitNanos, waitNanos);
+            this.runNanos += runNanos;
+        }
+    }
+
+    public static class Stats {
+
+        public final String name;
+        public final int queued;
+        public final int running;
+        public final long submitted;
+        public final long completed;
+        public final long waitNanos;
+        public final long maxWaitNanos;
+        public final long runNanos;
+
+        private Stats(Owner owner) {
+            this.name = owner.name;
+            this.queued = owner.queue.size();
+            this.running = owner.running;
+            this.submitted = owner.submitted;
+            this.completed = owner.completed;
+            this.waitNanos = owner.waitNanos;
+            this.maxWaitNanos = owner.maxWaitNanos;
+            this.runNanos = owner.runNanos;
+        }
+    }
+
+    private class OwnerExecutor extends AbstractExecutorService {
+
+        private final String name;
+        private final int maxRunning;
+        private volatile boolean shutdown;
+
+        private OwnerExecutor(String name, int maxRunning) {
+            this.name = name;
+            this.maxRunning = maxRunning;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            FairTaskPool.this.lock.lock();
+            try {
+                // Checked under the pool lock, nothing gets in after shutdown removed the owner
+                if (this.shutdown) {
+                    throw new RejectedExecutionException(this.name + " has been shut down");
+                }
+                FairTaskPool.this.execute(this, this.name, this.maxRunning, command);
+            } finally {
+                FairTaskPool.this.lock.unlock();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            FairTaskPool.this.lock.lock();
+            try {
+                this.shutdown = true;
+                FairTaskPool.this.remove(this);
+            } finally {
+                FairTaskPool.this.lock.unlock();
+            }
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            FairTaskPool.this.lock.lock();
+            try {
+                this.shutdown = true;
+                Owner owner = FairTaskPool.this.owners.get(this);
+                if (owner == null) {
+                    return Collections.emptyList();
+                }
+                List<Runnable> dropped = new ArrayList<>(owner.queue.size());
+                for (Task task : owner.queue) {
+                    dropped.add(task.runnable);
+                }
+                FairTaskPool.this.queued -= owner.queue.size();
+                owner.queue.clear();
+                if (owner.ready) {
+                    owner.ready = false;
+                    FairTaskPool.this.ready.remove(owner);
+                }
+                FairTaskPool.this.remove(this);
+                return dropped;
+            } finally {
+                FairTaskPool.this.lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return this.shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            FairTaskPool.this.lock.lock();
+            try {
+                return this.shutdown && !FairTaskPool.this.owners.containsKey(this);
+            } finally {
+                FairTaskPool.this.lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            long nanos = unit.toNanos(timeout);
+            FairTaskPool.this.lock.lock();
+            try {
+                while (!this.shutdown || FairTaskPool.this.owners.containsKey(this)) {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = FairTaskPool.this.drained.awaitNanos(nanos);
+                }
+                return true;
+            } finally {
+                FairTaskPool.this.lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package red.mohist.common.async;
+
+import net.minecraft.block.BlockFalling;
+
+/**
+ * BlockFalling.fallInstantly for worlds ticking in parallel. The vanilla flag is a static
+ * the generators set around populate, so the population of one world decided whether sand
+ * fell instantly in another. World tick threads keep their own flag, set by Chunk.populate
+ * for the whole population; writes to the static from those threads are not seen there.
+ */
+public class FallInstantly {
+
+    private static final ThreadLocal<Boolean> WORLD_THREAD = ThreadLocal.withInitial(() -> false);
+
+    public static boolean get() {
+        return ParallelWorldTicker.isWorldThread() ? WORLD_THREAD.get() : BlockFalling.fallInstantly;
+    }
+
+    public static void set(boolean value) {
+        if (ParallelWorldTicker.isWorldThread()) {
+            WORLD_THREAD.set(value);
+        } else {
+            BlockFalling.fallInstantly = value;
+        }
+    }
+}
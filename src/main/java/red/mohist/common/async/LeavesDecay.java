@@ -0,0 +1,73 @@
+package red.mohist.common.async;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+/**
+ * The leaves decay search of BlockLeaves.updateTick with one array per thread. Vanilla keeps
+ * the array in a field of the block, which every world shares, so world tick threads use
+ * this instead.
+ */
+public class LeavesDecay {
+
+    private static final int RADIUS = 4;
+    private static final int SIZE = RADIUS * 2 + 1;
+    private static final ThreadLocal<int[]> SURROUNDINGS = ThreadLocal.withInitial(() -> new int[SIZE * SIZE * SIZE]);
+
+    private static int index(int x, int y, int z) {
+        return ((x + RADIUS) * SIZE + y + RADIUS) * SIZE + z + RADIUS;
+    }
+
+    /**
+     * @return whether the leaves at the given position are at most four leaves away from a block that sustains them
+     */
+    public static boolean isSustained(World world, BlockPos pos) {
+        int[] surroundings = SURROUNDINGS.get();
+        BlockPos.MutableBlockPos mutable = new BlockPos.MutableBlockPos();
+        for (int x = -RADIUS; x <= RADIUS; ++x) {
+            for (int y = -RADIUS; y <= RADIUS; ++y) {
+                for (int z = -RADIUS; z <= RADIUS; ++z) {
+                    mutable.setPos(pos.getX() + x, pos.getY() + y, pos.getZ() + z);
+                    IBlockState state = world.getBlockState(mutable);
+                    Block block = state.getBlock();
+                    int value;
+                    if (block.canSustainLeaves(state, world, mutable)) {
+                        value = 0;
+                    } else if (block.isLeaves(state, world, mutable)) {
+                        value = -2;
+                    } else {
+                        value = -1;
+                    }
+                    surroundings[index(x, y, z)] = value;
+                }
+            }
+        }
+        // Spread the distance to the sustaining blocks through the leaves, like vanilla
+        for (int distance = 1; distance <= RADIUS; ++distance) {
+            for (int x = -RADIUS; x <= RADIUS; ++x) {
+                for (int y = -RADIUS; y <= RADIUS; ++y) {
+                    for (int z = -RADIUS; z <= RADIUS; ++z) {
+                        if (surroundings[index(x, y, z)] != distance - 1) {
+                            continue;
+                        }
+                        mark(surroundings, x - 1, y, z, distance);
+                        mark(surroundings, x + 1, y, z, distance);
+                        mark(surroundings, x, y - 1, z, distance);
+                        mark(surroundings, x, y + 1, z, distance);
+                        mark(surroundings, x, y, z - 1, distance);
+                        mark(surroundings, x, y, z + 1, distance);
+                    }
+                }
+            }
+        }
+        return surroundings[index(0, 0, 0)] >= 0;
+    }
+
+    private static void mark(int[] surroundings, int x, int y, int z, int distance) {
+        if (x >= -RADIUS && x <= RADIUS && y >= -RADIUS && y <= RADIUS && z >= -RADIUS && z <= RADIUS && surroundings[index(x, y, z)] == -2) {
+            surroundings[index(x, y, z)] = distance;
+        }
+    }
+}
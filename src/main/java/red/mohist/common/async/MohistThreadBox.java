@@ -12,9 +12,13 @@ public class MohistThreadBox {
 
     public static final ScheduledExecutorService METRICS = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("Metrics"));
 
-    public static final ExecutorService ASYNCCHAT = Executors.newCachedThreadPool(new NamedThreadFactory("Async Chat Thread"));
+    // Mohist start - one bounded pool for plugin async tasks and server background work
+    public static final FairTaskPool ASYNC_POOL = new FairTaskPool("Mohist Async Pool Thread");
 
-    public static final ExecutorService FILEIO = Executors.newFixedThreadPool(2, new NamedThreadFactory("Mohist File IO Thread"));
+    public static final ExecutorService ASYNCCHAT = ASYNC_POOL.executor("Async Chat", 0);
+
+    public static final ExecutorService FILEIO = ASYNC_POOL.executor("File IO", 2);
+    // Mohist end
 
     public static final ExecutorService ASYNCEXECUTOR = Executors.newSingleThreadExecutor(new NamedThreadFactory("Mohist Async Task Handler Thread"));
 
@@ -0,0 +1,135 @@
+package red.mohist.common.async;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Consumer;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+import red.mohist.configuration.MohistConfig;
+
+/**
+ * Ticks independent WorldServer instances on a fork-join pool.
+ * The caller is blocked until every world has finished, so the
+ * cross-world phases (player list, network, scheduler) still run
+ * on the server thread with all worlds quiescent.
+ */
+public class ParallelWorldTicker {
+
+    private static final ThreadLocal<WorldServer> OWNER = new ThreadLocal<>();
+    private static volatile boolean ticking = false;
+    private static ForkJoinPool pool;
+    private static final Queue<Runnable> deferred = new ConcurrentLinkedQueue<>();
+    private static final Set<Object> deferredKeys = ConcurrentHashMap.newKeySet();
+
+    public static boolean isEnabled(List<WorldServer> worlds) {
+        return MohistConfig.instance != null && MohistConfig.instance.parallelWorldTicking.getValue() && worlds.size() > 1;
+    }
+
+    public static boolean isTicking() {
+        return ticking;
+    }
+
+    /**
+     * @return the world owned by the current thread, or null when the
+     * current thread is not ticking a world in parallel
+     */
+    public static WorldServer getOwnedWorld() {
+        return OWNER.get();
+    }
+
+    public static boolean isWorldThread() {
+        return OWNER.get() != null;
+    }
+
+    /**
+     * A world tick thread may only touch the world it is ticking,
+     * any other thread is left to the regular async checks.
+     */
+    public static boolean ownsWorld(World world) {
+        WorldServer owner = OWNER.get();
+        return owner == null || owner == world;
+    }
+
+    /**
+     * Queues work that reaches into another world, like a dimension change. It runs on the
+     * server thread once every world has finished its tick. A task for a key that is already
+     * queued is dropped, so an entity touching a portal twice in one tick moves once.
+     *
+     * @return true if the caller is a world tick thread and has to leave the work to the task
+     */
+    public static boolean deferToMainThread(Object key, Runnable task) {
+        if (!isWorldThread()) {
+            return false;
+        }
+        if (deferredKeys.add(key)) {
+            deferred.add(() -> {
+                deferredKeys.remove(key);
+                task.run();
+            });
+        }
+        return true;
+    }
+
+    public static void tickWorlds(List<WorldServer> worlds, Consumer<WorldServer> ticker) {
+        WorldServer[] snapshot = worlds.toArray(new WorldServer[0]);
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[snapshot.length];
+        ForkJoinPool pool = getPool();
+        RuntimeException failure = null;
+        ticking = true;
+        try {
+            for (int i = 0; i < snapshot.length; i++) {
+                WorldServer world = snapshot[i];
+                tasks[i] = pool.submit(() -> {
+                    OWNER.set(world);
+                    try {
+                        ticker.accept(world);
+                    } finally {
+                        OWNER.remove();
+                    }
+                });
+            }
+            // Barrier, wait for every world before returning to the cross-world phases
+            for (ForkJoinTask<?> task : tasks) {
+                try {
+                    task.join();
+                } catch (RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+        } finally {
+            ticking = false;
+        }
+        // Worlds are quiescent now, run what they could not do to each other
+        Runnable task;
+        while ((task = deferred.poll()) != null) {
+            task.run();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            int threads = MohistConfig.instance.parallelWorldTickingThreads.getValue();
+            if (threads <= 0) {
+                threads = Runtime.getRuntime().availableProcessors();
+            }
+            pool = new ForkJoinPool(threads, forkJoinPool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                thread.setName("Mohist World Tick Thread - " + thread.getPoolIndex());
+                thread.setPriority(7);
+                return thread;
+            }, null, false);
+        }
+        return pool;
+    }
+}
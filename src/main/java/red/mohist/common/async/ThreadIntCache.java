@@ -0,0 +1,58 @@
+package red.mohist.common.async;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * IntCache with one pool per thread. The vanilla pool is global and recycled by
+ * resetIntCache(), so a world ticking in parallel would hand out arrays another world's
+ * GenLayers are still filling.
+ */
+public class ThreadIntCache {
+
+    private static final ThreadLocal<ThreadIntCache> CACHE = ThreadLocal.withInitial(ThreadIntCache::new);
+
+    private int largeSize = 256;
+    private final List<int[]> freeSmallArrays = new ArrayList<>();
+    private final List<int[]> inUseSmallArrays = new ArrayList<>();
+    private final List<int[]> freeLargeArrays = new ArrayList<>();
+    private final List<int[]> inUseLargeArrays = new ArrayList<>();
+
+    public static int[] getIntCache(int size) {
+        return CACHE.get().get(size);
+    }
+
+    public static void resetIntCache() {
+        CACHE.get().reset();
+    }
+
+    private int[] get(int size) {
+        if (size <= 256) {
+            int[] array = this.freeSmallArrays.isEmpty() ? new int[256] : this.freeSmallArrays.remove(this.freeSmallArrays.size() - 1);
+            this.inUseSmallArrays.add(array);
+            return array;
+        }
+        if (size > this.largeSize) {
+            this.largeSize = size;
+            this.freeLargeArrays.clear();
+            this.inUseLargeArrays.clear();
+        }
+        int[] array = this.freeLargeArrays.isEmpty() ? new int[this.largeSize] : this.freeLargeArrays.remove(this.freeLargeArrays.size() - 1);
+        this.inUseLargeArrays.add(array);
+        return array;
+    }
+
+    private void reset() {
+        // Like vanilla, drop one free array per reset so the pool shrinks back after a spike
+        if (!this.freeLargeArrays.isEmpty()) {
+            this.freeLargeArrays.remove(this.freeLargeArrays.size() - 1);
+        }
+        if (!this.freeSmallArrays.isEmpty()) {
+            this.freeSmallArrays.remove(this.freeSmallArrays.size() - 1);
+        }
+        this.freeLargeArrays.addAll(this.inUseLargeArrays);
+        this.freeSmallArrays.addAll(this.inUseSmallArrays);
+        this.inUseLargeArrays.clear();
+        this.inUseSmallArrays.clear();
+    }
+}
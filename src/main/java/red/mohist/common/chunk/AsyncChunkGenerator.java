@@ -0,0 +1,194 @@
+package red.mohist.common.chunk;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.ChunkPrimer;
+import net.minecraft.world.gen.ChunkProviderServer;
+import red.mohist.Mohist;
+import red.mohist.common.async.NamedThreadFactory;
+import red.mohist.configuration.MohistConfig;
+
+/**
+ * Generates the base terrain of chunks players are waiting for on a worker pool. Only
+ * {@link AsyncTerrainGenerator#generateTerrain} runs there, the chunk is still generated,
+ * populated and loaded by ChunkProviderServer.provideChunk on the main thread, the
+ * generator just finds its terrain done. PlayerChunkMapEntry asks {@link #prepare} before
+ * generating and retries on the next ticks until the worker is done.
+ * <p>
+ * A world takes part only if both its generator and its biome provider are on the
+ * world.asyncChunkGenSafeClasses list, anything else is generated on the main thread as
+ * before. The list holds exact classes, a mod generator extending a vanilla one is not safe
+ * just because its parent is. One instance per ChunkProviderServer, only used by the
+ * thread ticking the world.
+ */
+public class AsyncChunkGenerator {
+
+    // Unclaimed terrain is dropped after this many ticks, a ChunkPrimer is 128 KiB
+    private static final int EXPIRE_TICKS = 200;
+    private static final ThreadLocal<Boolean> WORKER = ThreadLocal.withInitial(() -> false);
+
+    private static ExecutorService pool;
+
+    private final ChunkProviderServer provider;
+    private final Long2ObjectOpenHashMap<Job> jobs = new Long2ObjectOpenHashMap<>();
+    private Boolean safe;
+    private int lastExpire;
+
+    public AsyncChunkGenerator(ChunkProviderServer provider) {
+        this.provider = provider;
+    }
+
+    public static boolean isEnabled() {
+        return MohistConfig.instance != null && MohistConfig.instance.asyncChunkGenThreads.getValue() > 0;
+    }
+
+    /**
+     * Worker threads get their own GenLayer arrays, see IntCache.
+     */
+    public static boolean isWorkerThread() {
+        return WORKER.get();
+    }
+
+    private static synchronized ExecutorService getPool() {
+        if (pool == null) {
+            int threads = MohistConfig.instance.asyncChunkGenThreads.getValue();
+            ThreadFactory factory = new NamedThreadFactory("Mohist Chunk Generation Thread");
+            pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> factory.newThread(() -> {
+                WORKER.set(true);
+                runnable.run();
+            }));
+        }
+        return pool;
+    }
+
+    /**
+     * @return true if the chunk can be provided now, false if its terrain is still being generated
+     */
+    public boolean prepare(int x, int z) {
+        if (!isEnabled()) {
+            return true;
+        }
+        this.expire();
+        long key = ChunkPos.asLong(x, z);
+        Job job = this.jobs.get(key);
+        if (job != null) {
+            return job.done;
+        }
+        if (!this.isSafe() || this.provider.id2ChunkMap.containsKey(key) || this.provider.isChunkGeneratedAt(x, z)) {
+            return true;
+        }
+        if (this.jobs.size() >= MohistConfig.instance.asyncChunkGenMaxPending.getValue()) {
+            return false;
+        }
+        job = new Job((AsyncTerrainGenerator) this.provider.chunkGenerator, x, z);
+        this.jobs.put(key, job);
+        getPool().execute(job);
+        return false;
+    }
+
+    /**
+     * Called by the generator from generateChunk.
+     *
+     * @return the terrain a worker generated for the chunk, or null if the caller has to generate it
+     */
+    @Nullable
+    public static ChunkPrimer takeTerrain(AsyncTerrainGenerator generator, World world, int x, int z) {
+        if (!(world instanceof WorldServer)) {
+            return null;
+        }
+        ChunkProviderServer provider = ((WorldServer) world).getChunkProvider();
+        if (provider == null || provider.chunkGenerator != generator) {
+            return null;
+        }
+        return provider.asyncChunkGenerator.take(x, z);
+    }
+
+    @Nullable
+    private ChunkPrimer take(int x, int z) {
+        if (this.jobs.isEmpty()) {
+            return null;
+        }
+        Job job = this.jobs.remove(ChunkPos.asLong(x, z));
+        if (job == null) {
+            return null;
+        }
+        // A job that is not done may still be running, the caller generates the terrain itself
+        // and the worker's result is dropped.
+        job.cancelled = true;
+        return job.done ? job.primer : null;
+    }
+
+    public int getPending() {
+        return this.jobs.size();
+    }
+
+    private boolean isSafe() {
+        if (this.safe == null) {
+            MohistConfig config = MohistConfig.instance;
+            String generator = this.provider.chunkGenerator.getClass().getName();
+            String biomes = this.provider.world.getBiomeProvider().getClass().getName();
+            this.safe = this.provider.chunkGenerator instanceof AsyncTerrainGenerator
+                    && config.asyncChunkGenSafeClasses.contains(generator) && config.asyncChunkGenSafeClasses.contains(biomes);
+            if (!this.safe) {
+                Mohist.LOGGER.info("Generating chunks of " + this.provider.world.getWorldInfo().getWorldName() + " on the main thread, " + generator + " with " + biomes + " is not known to be thread-safe");
+            }
+        }
+        return this.safe;
+    }
+
+    private void expire() {
+        if (MinecraftServer.currentTick - this.lastExpire < 20 || this.jobs.isEmpty()) {
+            return;
+        }
+        this.lastExpire = MinecraftServer.currentTick;
+        ObjectIterator<Job> iterator = this.jobs.values().iterator();
+        while (iterator.hasNext()) {
+            Job job = iterator.next();
+            if (MinecraftServer.currentTick - job.submitted > EXPIRE_TICKS) {
+                job.cancelled = true;
+                iterator.remove();
+            }
+        }
+    }
+
+    private static class Job implements Runnable {
+
+        private final AsyncTerrainGenerator generator;
+        private final int x;
+        private final int z;
+        private final int submitted = MinecraftServer.currentTick;
+        private volatile boolean cancelled;
+        private volatile boolean done;
+        private volatile ChunkPrimer primer;
+
+        private Job(AsyncTerrainGenerator generator, int x, int z) {
+            this.generator = generator;
+            this.x = x;
+            this.z = z;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (!this.cancelled) {
+                    this.primer = this.generator.generateTerrain(this.x, this.z);
+                }
+            } catch (Throwable t) {
+                // The main thread generates the chunk again and reports it properly if it fails there too
+                Mohist.LOGGER.error("Failed to generate the terrain of chunk " + this.x + ", " + this.z, t);
+            } finally {
+                this.done = true;
+            }
+        }
+    }
+}
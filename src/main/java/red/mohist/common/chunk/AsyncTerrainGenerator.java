@@ -0,0 +1,15 @@
+package red.mohist.common.chunk;
+
+import net.minecraft.world.chunk.ChunkPrimer;
+
+/**
+ * A chunk generator whose base terrain can be built on another thread. generateTerrain may
+ * only touch the world's biome provider and noise buffers of the calling thread, a worker
+ * runs it while generateChunk runs on the main thread. Everything else (surface blocks,
+ * caves, structures, the Chunk itself) stays in generateChunk on the main thread, which
+ * picks the terrain up through {@link AsyncChunkGenerator#takeTerrain}.
+ */
+public interface AsyncTerrainGenerator {
+
+    ChunkPrimer generateTerrain(int x, int z);
+}
@@ -0,0 +1,174 @@
+package red.mohist.common.chunk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+import javax.annotation.Nullable;
+
+/**
+ * Compression codecs for chunks in region files. The id is the compression type byte
+ * stored in front of every chunk, vanilla only knows gzip (1) and zlib (2).
+ */
+public abstract class ChunkCodec {
+
+    // A region entry holds at most 255 sectors of 4 KiB, raw chunk NBT is far below this even for packed chunks
+    private static final int MAX_RAW_LENGTH = 32 * 1024 * 1024;
+
+    public static final ChunkCodec GZIP = new ChunkCodec(1, "gzip") {
+        @Override
+        public OutputStream compress(OutputStream out) throws IOException {
+            return new GZIPOutputStream(out);
+        }
+
+        @Override
+        public InputStream decompress(byte[] data) throws IOException {
+            return new GZIPInputStream(new ByteArrayInputStream(data));
+        }
+    };
+
+    public static final ChunkCodec ZLIB = new ChunkCodec(2, "zlib") {
+        @Override
+        public OutputStream compress(OutputStream out) {
+            return new DeflaterOutputStream(out);
+        }
+
+        @Override
+        public InputStream decompress(byte[] data) {
+            return new InflaterInputStream(new ByteArrayInputStream(data));
+        }
+    };
+
+    // Same id later vanilla versions use for uncompressed chunks
+    public static final ChunkCodec NONE = new ChunkCodec(3, "none") {
+        @Override
+        public OutputStream compress(OutputStream out) {
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public InputStream decompress(byte[] data) {
+            return new ByteArrayInputStream(data);
+        }
+    };
+
+    public static final ChunkCodec LZ4 = new ChunkCodec(77, "lz4") {
+        @Override
+        public OutputStream compress(OutputStream out) {
+            return new ByteArrayOutputStream(8192) {
+                @Override
+                public void close() throws IOException {
+                    byte[] block = new byte[LZ4Block.maxCompressedLength(count)];
+                    int length = LZ4Block.compress(buf, count, block);
+                    out.write(count >>> 24);
+                    out.write(count >>> 16);
+                    out.write(count >>> 8);
+                    out.write(count);
+                    out.write(block, 0, length);
+                    out.close();
+                }
+            };
+        }
+
+        @Override
+        public InputStream decompress(byte[] data) throws IOException {
+            if (data.length < 4) {
+                throw new IOException("Truncated lz4 chunk");
+            }
+            int length = (data[0] & 0xFF) << 24 | (data[1] & 0xFF) << 16 | (data[2] & 0xFF) << 8 | data[3] & 0xFF;
+            // Checked before allocating, a corrupt header must not be able to ask for gigabytes
+            if (length < 0 || length > MAX_RAW_LENGTH || length > LZ4Block.maxDecompressedLength(data.length - 4)) {
+                throw new IOException("Malformed lz4 chunk, bad length " + length);
+            }
+            byte[] raw = new byte[length];
+            LZ4Block.decompress(data, 4, data.length - 4, raw);
+            return new ByteArrayInputStream(raw);
+        }
+    };
+
+    private static final ChunkCodec[] VALUES = {GZIP, ZLIB, NONE, LZ4};
+
+    private final int id;
+    private final String name;
+
+    private ChunkCodec(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public abstract OutputStream compress(OutputStream out) throws IOException;
+
+    public abstract InputStream decompress(byte[] data) throws IOException;
+
+    @Nullable
+    public static ChunkCodec byId(int id) {
+        for (ChunkCodec codec : VALUES) {
+            if (codec.id == id) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the codec, zlib if the name is unknown
+     */
+    public static ChunkCodec byName(String name) {
+        ChunkCodec codec = byNameOrNull(name);
+        return codec != null ? codec : ZLIB;
+    }
+
+    @Nullable
+    public static ChunkCodec byNameOrNull(String name) {
+        if (name != null) {
+            String lower = name.toLowerCase(Locale.ENGLISH);
+            if (lower.equals("uncompressed")) {
+                return NONE;
+            }
+            for (ChunkCodec codec : VALUES) {
+                if (codec.name.equals(lower)) {
+                    return codec;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return true for the types vanilla RegionFile does not read itself
+     */
+    public static boolean isCustomId(int id) {
+        return id != GZIP.id && id != ZLIB.id && byId(id) != null;
+    }
+
+    public static String names() {
+        StringBuilder builder = new StringBuilder();
+        for (ChunkCodec codec : VALUES) {
+            if (builder.length() > 0) {
+                builder.append('|');
+            }
+            builder.append(codec.name);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,218 @@
+package red.mohist.common.chunk;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.EnumConnectionState;
+import net.minecraft.network.EnumPacketDirection;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.network.play.server.SPacketChunkData;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.NibbleArray;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import red.mohist.Mohist;
+import red.mohist.common.async.NamedThreadFactory;
+import red.mohist.configuration.MohistConfig;
+
+/**
+ * Builds full chunk packets for PlayerChunkMapEntry off the main thread. The main thread
+ * copies what SPacketChunkData would read (palettes, block storage, light, biomes) and
+ * asks the tile entities for their update tags, a worker writes the packet id and payload
+ * into a byte array that is handed to the connections as is. The bytes are the same
+ * SPacketChunkData.writePacketData would produce for a full chunk.
+ * <p>
+ * {@link #tryAcquire(Collection)} limits how many chunks a player starts to receive per
+ * tick, whether the packets are built here or on the main thread.
+ */
+public class ChunkPacketBuilder {
+
+    private static final int LIGHT_BYTES = 2048;
+
+    private static final int packetId;
+    private static ExecutorService pool;
+
+    private static final Reference2IntOpenHashMap<EntityPlayerMP> sentThisTick = new Reference2IntOpenHashMap<>();
+    private static int sentTick;
+
+    static {
+        int id;
+        try {
+            id = EnumConnectionState.PLAY.getPacketId(EnumPacketDirection.CLIENTBOUND, new SPacketChunkData());
+        } catch (Exception e) {
+            // Leaves building to the main thread
+            Mohist.LOGGER.error("Failed to resolve the chunk packet id", e);
+            id = -1;
+        }
+        packetId = id;
+    }
+
+    public static boolean isEnabled() {
+        return packetId >= 0 && MohistConfig.instance != null && MohistConfig.instance.chunkPacketThreads.getValue() > 0;
+    }
+
+    private static synchronized ExecutorService getPool() {
+        if (pool == null) {
+            int threads = MohistConfig.instance.chunkPacketThreads.getValue();
+            pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory("Mohist Chunk Packet Thread"));
+        }
+        return pool;
+    }
+
+    /**
+     * Takes the snapshot of a populated chunk, must be called on the thread ticking its world.
+     *
+     * @return the encoded packet, or null if building failed and the packet has to be built on the main thread
+     */
+    public static CompletableFuture<byte[]> submit(Chunk chunk) {
+        ExecutorService executor = getPool();
+        Snapshot snapshot = new Snapshot(chunk);
+        return CompletableFuture.supplyAsync(snapshot::encode, executor).exceptionally(t -> {
+            Mohist.LOGGER.error("Failed to build the packet of chunk " + snapshot.x + ", " + snapshot.z, t);
+            return null;
+        });
+    }
+
+    /**
+     * Counts a chunk send against every player watching it. The chunk may go out as long
+     * as one of them has budget left this tick, so a chunk shared with a player that is
+     * still catching up is not held back.
+     */
+    public static boolean tryAcquire(Collection<EntityPlayerMP> players) {
+        int max = MohistConfig.instance == null ? 0 : MohistConfig.instance.maxChunkSendsPerPlayerTick.getValue();
+        if (max <= 0 || players.isEmpty()) {
+            return true;
+        }
+        synchronized (sentThisTick) {
+            if (sentTick != MinecraftServer.currentTick) {
+                sentTick = MinecraftServer.currentTick;
+                sentThisTick.clear();
+            }
+            boolean allowed = false;
+            for (EntityPlayerMP player : players) {
+                allowed |= sentThisTick.getInt(player) < max;
+            }
+            if (allowed) {
+                for (EntityPlayerMP player : players) {
+                    sentThisTick.addTo(player, 1);
+                }
+            }
+            return allowed;
+        }
+    }
+
+    static class Snapshot {
+
+        private final int x;
+        private final int z;
+        private final boolean skyLight;
+        private int availableSections;
+        private final List<Section> sections = new ArrayList<>();
+        private final byte[] biomes;
+        private final int tileEntities;
+        private final byte[] tileEntityTags;
+
+        Snapshot(Chunk chunk) {
+            this.x = chunk.x;
+            this.z = chunk.z;
+            this.skyLight = chunk.getWorld().provider.hasSkyLight();
+
+            ExtendedBlockStorage[] storages = chunk.getBlockStorageArray();
+            for (int i = 0; i < storages.length; ++i) {
+                ExtendedBlockStorage storage = storages[i];
+                if (storage != Chunk.NULL_BLOCK_STORAGE && !storage.isEmpty()) {
+                    this.availableSections |= 1 << i;
+                    this.sections.add(new Section(storage, this.skyLight));
+                }
+            }
+            this.biomes = chunk.getBiomeArray().clone();
+
+            // Mods build update tags from live state, this part stays on the main thread
+            ByteBuf tags = Unpooled.buffer();
+            PacketBuffer buffer = new PacketBuffer(tags);
+            int count = 0;
+            for (TileEntity tileEntity : chunk.getTileEntityMap().values()) {
+                buffer.writeCompoundTag(tileEntity.getUpdateTag());
+                ++count;
+            }
+            this.tileEntities = count;
+            this.tileEntityTags = new byte[tags.readableBytes()];
+            tags.readBytes(this.tileEntityTags);
+        }
+
+        byte[] encode() {
+            int dataSize = this.biomes.length;
+            for (Section section : this.sections) {
+                dataSize += section.size();
+            }
+            int size = PacketBuffer.getVarIntSize(packetId) + 4 + 4 + 1 + PacketBuffer.getVarIntSize(this.availableSections)
+                    + PacketBuffer.getVarIntSize(dataSize) + dataSize
+                    + PacketBuffer.getVarIntSize(this.tileEntities) + this.tileEntityTags.length;
+
+            byte[] bytes = new byte[size];
+            PacketBuffer buffer = new PacketBuffer(Unpooled.wrappedBuffer(bytes));
+            buffer.writerIndex(0);
+            buffer.writeVarInt(packetId);
+            buffer.writeInt(this.x);
+            buffer.writeInt(this.z);
+            buffer.writeBoolean(true);
+            buffer.writeVarInt(this.availableSections);
+            buffer.writeVarInt(dataSize);
+            for (Section section : this.sections) {
+                section.write(buffer);
+            }
+            buffer.writeBytes(this.biomes);
+            buffer.writeVarInt(this.tileEntities);
+            buffer.writeBytes(this.tileEntityTags);
+            if (buffer.writerIndex() != size) {
+                throw new IllegalStateException("Chunk packet size mismatch, expected " + size + " but wrote " + buffer.writerIndex());
+            }
+            PlayerChunkSendQueue.recordChunkBytes(size);
+            return bytes;
+        }
+    }
+
+    private static class Section {
+
+        private final byte[] palette;
+        private final long[] data;
+        private final byte[] blockLight;
+        private final byte[] skyLight;
+
+        private Section(ExtendedBlockStorage storage, boolean skyLight) {
+            ByteBuf palette = Unpooled.buffer(64);
+            storage.getData().writePalette(new PacketBuffer(palette));
+            this.palette = new byte[palette.readableBytes()];
+            palette.readBytes(this.palette);
+            this.data = storage.getData().getStorageData().clone();
+            this.blockLight = storage.getBlockLight().getData().clone();
+            NibbleArray sky = storage.getSkyLight();
+            // A missing sky light array reads as dark, see ExtendedBlockStorage.getSkyLight
+            this.skyLight = !skyLight ? null : sky == null ? new byte[LIGHT_BYTES] : sky.getData().clone();
+        }
+
+        private int size() {
+            return this.palette.length + PacketBuffer.getVarIntSize(this.data.length) + this.data.length * 8
+                    + this.blockLight.length + (this.skyLight == null ? 0 : this.skyLight.length);
+        }
+
+        private void write(PacketBuffer buffer) {
+            buffer.writeBytes(this.palette);
+            buffer.writeLongArray(this.data);
+            buffer.writeBytes(this.blockLight);
+            if (this.skyLight != null) {
+                buffer.writeBytes(this.skyLight);
+            }
+        }
+    }
+}
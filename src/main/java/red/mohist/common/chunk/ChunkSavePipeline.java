@@ -0,0 +1,276 @@
+package red.mohist.common.chunk;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.Nullable;
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.storage.RegionFileCache;
+import org.bukkit.craftbukkit.v1_12_R1.SpigotTimings;
+import red.mohist.Mohist;
+import red.mohist.common.async.NamedThreadFactory;
+import red.mohist.configuration.MohistConfig;
+
+/**
+ * Staged chunk save pipeline used by AnvilChunkLoader.
+ * The NBT snapshot is taken on the main thread as before, compression runs on a
+ * bounded worker pool and the region writes are chained so that every region file
+ * sees its chunks in the order they were submitted.
+ */
+public class ChunkSavePipeline {
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+    private static final Object LOCK = new Object();
+
+    private static ExecutorService pool;
+
+    private static final AtomicInteger inFlight = new AtomicInteger();
+    private static final AtomicInteger awaitingCompression = new AtomicInteger();
+    private static final AtomicInteger awaitingWrite = new AtomicInteger();
+    private static final AtomicLong submitted = new AtomicLong();
+    private static final AtomicLong completed = new AtomicLong();
+    private static final AtomicLong failed = new AtomicLong();
+    private static final AtomicLong bytesWritten = new AtomicLong();
+    private static final AtomicLong backpressureWaits = new AtomicLong();
+    private static final long[] completedPerSecond = new long[60];
+    private static final long[] bucketSecond = new long[60];
+
+    public static boolean isEnabled() {
+        return MohistConfig.instance != null && MohistConfig.instance.chunkSaveThreads.getValue() > 0;
+    }
+
+    private static synchronized ExecutorService getPool() {
+        if (pool == null) {
+            int threads = MohistConfig.instance.chunkSaveThreads.getValue();
+            pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory("Mohist Chunk Save Thread"));
+        }
+        return pool;
+    }
+
+    /**
+     * Blocks the calling IO thread while the pipeline is full.
+     */
+    public static void awaitCapacity() {
+        if (!isEnabled()) {
+            return;
+        }
+        int max = Math.max(1, MohistConfig.instance.chunkSaveMaxInFlight.getValue());
+        if (inFlight.get() < max) {
+            return;
+        }
+        long start = System.nanoTime();
+        backpressureWaits.incrementAndGet();
+        synchronized (LOCK) {
+            while (inFlight.get() >= max) {
+                try {
+                    LOCK.wait(50L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        SpigotTimings.chunkSaveBackpressureTimer.addTiming(System.nanoTime() - start);
+    }
+
+    public static int getInFlight() {
+        return inFlight.get();
+    }
+
+    public static int getAwaitingCompression() {
+        return awaitingCompression.get();
+    }
+
+    public static int getAwaitingWrite() {
+        return awaitingWrite.get();
+    }
+
+    public static long getSubmitted() {
+        return submitted.get();
+    }
+
+    public static long getCompleted() {
+        return completed.get();
+    }
+
+    public static long getFailed() {
+        return failed.get();
+    }
+
+    public static long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    public static long getBackpressureWaits() {
+        return backpressureWaits.get();
+    }
+
+    /**
+     * @param seconds window size, at most 60
+     * @return chunks written per second over the last seconds
+     */
+    public static double getThroughput(int seconds) {
+        seconds = Math.max(1, Math.min(seconds, completedPerSecond.length));
+        long now = System.currentTimeMillis() / 1000L;
+        long total = 0;
+        synchronized (completedPerSecond) {
+            for (int i = 0; i < completedPerSecond.length; i++) {
+                if (now - bucketSecond[i] < seconds) {
+                    total += completedPerSecond[i];
+                }
+            }
+        }
+        return (double) total / seconds;
+    }
+
+    private static void recordCompletion(int length) {
+        completed.incrementAndGet();
+        bytesWritten.addAndGet(length);
+        long second = System.currentTimeMillis() / 1000L;
+        int index = (int) (second % completedPerSecond.length);
+        synchronized (completedPerSecond) {
+            if (bucketSecond[index] != second) {
+                bucketSecond[index] = second;
+                completedPerSecond[index] = 0;
+            }
+            completedPerSecond[index]++;
+        }
+    }
+
+    private static byte[] compress(NBTTagCompound compound, ChunkCodec codec, int[] length) throws IOException {
+        ChunkSavePipeline.Buffer buffer = new ChunkSavePipeline.Buffer();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(codec.compress(buffer)))) {
+            CompressedStreamTools.write(compound, out);
+        }
+        length[0] = buffer.size();
+        return buffer.array();
+    }
+
+    /**
+     * The save queue of a single AnvilChunkLoader.
+     */
+    public static class Queue {
+
+        private final Map<ChunkPos, NBTTagCompound> pending = new ConcurrentHashMap<>();
+        private final Map<Long, CompletableFuture<Void>> regionTails = new HashMap<>();
+        private final AtomicInteger queued = new AtomicInteger();
+
+        /**
+         * @return the newest compound handed to the pipeline that is not on disk yet
+         */
+        @Nullable
+        public NBTTagCompound getPending(int x, int z) {
+            return pending.isEmpty() ? null : pending.get(new ChunkPos(x, z));
+        }
+
+        /**
+         * @return false if the pipeline is disabled and the caller has to write the chunk itself
+         */
+        public boolean submit(File chunkSaveLocation, ChunkPos pos, NBTTagCompound compound, ChunkCodec codec) {
+            if (!isEnabled()) {
+                return false;
+            }
+            ExecutorService executor = getPool();
+            pending.put(pos, compound);
+            queued.incrementAndGet();
+            inFlight.incrementAndGet();
+            submitted.incrementAndGet();
+            awaitingCompression.incrementAndGet();
+
+            int[] length = new int[1];
+            CompletableFuture<byte[]> compressed = CompletableFuture.supplyAsync(() -> {
+                long start = System.nanoTime();
+                try {
+                    return compress(compound, codec, length);
+                } catch (Throwable t) {
+                    Mohist.LOGGER.error("Failed to save chunk", t);
+                    return null;
+                } finally {
+                    awaitingCompression.decrementAndGet();
+                    awaitingWrite.incrementAndGet();
+                    SpigotTimings.chunkSaveCompressTimer.addTiming(System.nanoTime() - start);
+                }
+            }, executor);
+
+            long regionKey = ChunkPos.asLong(pos.x >> 5, pos.z >> 5);
+            CompletableFuture<Void> write;
+            synchronized (regionTails) {
+                CompletableFuture<Void> previous = regionTails.getOrDefault(regionKey, DONE);
+                write = CompletableFuture.allOf(previous, compressed).thenRunAsync(() -> {
+                    long start = System.nanoTime();
+                    byte[] data = compressed.join();
+                    try {
+                        if (data == null) {
+                            failed.incrementAndGet();
+                            return;
+                        }
+                        RegionFileCache.writeChunkData(chunkSaveLocation, pos.x, pos.z, data, length[0], codec);
+                        recordCompletion(length[0]);
+                    } catch (Throwable t) {
+                        failed.incrementAndGet();
+                        Mohist.LOGGER.error("Failed to save chunk", t);
+                    } finally {
+                        awaitingWrite.decrementAndGet();
+                        SpigotTimings.chunkSaveWriteTimer.addTiming(System.nanoTime() - start);
+                    }
+                }, executor);
+                regionTails.put(regionKey, write);
+            }
+
+            CompletableFuture<Void> tail = write;
+            write.whenComplete((v, t) -> {
+                synchronized (regionTails) {
+                    regionTails.remove(regionKey, tail);
+                }
+                pending.remove(pos, compound);
+                queued.decrementAndGet();
+                inFlight.decrementAndGet();
+                synchronized (LOCK) {
+                    LOCK.notifyAll();
+                }
+            });
+            return true;
+        }
+
+        /**
+         * Blocks until everything submitted by this queue is on disk.
+         */
+        public void waitForFinish() {
+            synchronized (LOCK) {
+                while (queued.get() > 0) {
+                    try {
+                        LOCK.wait(50L);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private static class Buffer extends ByteArrayOutputStream {
+
+        private Buffer() {
+            super(8096);
+        }
+
+        private byte[] array() {
+            return buf;
+        }
+    }
+}
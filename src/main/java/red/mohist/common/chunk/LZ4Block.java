@@ -0,0 +1,160 @@
+package red.mohist.common.chunk;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Pure java LZ4 block format compressor, greedy single hash probe like the reference "fast" mode.
+ * Chunk NBT is small and highly repetitive so this trades some ratio against zlib for a lot of speed.
+ */
+final class LZ4Block {
+
+    private static final int MIN_MATCH = 4;
+    private static final int HASH_LOG = 14;
+    private static final int MF_LIMIT = 12;
+    private static final int LAST_LITERALS = 5;
+    private static final int MAX_DISTANCE = 65535;
+
+    private static final ThreadLocal<int[]> TABLE = ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+    private LZ4Block() {
+    }
+
+    static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Every input byte expands to at most 255 output bytes, longer claims can only come from corrupt data.
+     */
+    static long maxDecompressedLength(int compressedLength) {
+        return (long) compressedLength * 255;
+    }
+
+    static int compress(byte[] src, int length, byte[] dst) {
+        int[] table = TABLE.get();
+        Arrays.fill(table, 0); // positions are stored + 1, 0 is empty
+        int anchor = 0;
+        int ip = 0;
+        int op = 0;
+        int limit = length - MF_LIMIT;
+        int matchLimit = length - LAST_LITERALS;
+
+        while (ip < limit) {
+            int sequence = readInt(src, ip);
+            int hash = (sequence * -1640531535) >>> (32 - HASH_LOG);
+            int ref = table[hash] - 1;
+            table[hash] = ip + 1;
+
+            if (ref < 0 || ip - ref > MAX_DISTANCE || readInt(src, ref) != sequence) {
+                ++ip;
+                continue;
+            }
+
+            while (ip > anchor && ref > 0 && src[ip - 1] == src[ref - 1]) {
+                --ip;
+                --ref;
+            }
+
+            int matchLength = MIN_MATCH;
+            while (ip + matchLength < matchLimit && src[ref + matchLength] == src[ip + matchLength]) {
+                ++matchLength;
+            }
+
+            op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLength, dst, op);
+            ip += matchLength;
+            anchor = ip;
+        }
+
+        // The last sequence only carries literals
+        int literals = length - anchor;
+        int token = op++;
+        op = writeLength(literals, dst, op, token, 4);
+        System.arraycopy(src, anchor, dst, op, literals);
+        return op + literals;
+    }
+
+    static void decompress(byte[] src, int offset, int length, byte[] dst) throws IOException {
+        try {
+            int ip = offset;
+            int end = offset + length;
+            int op = 0;
+
+            while (ip < end) {
+                int token = src[ip++] & 0xFF;
+                int literals = token >>> 4;
+                if (literals == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        literals += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(src, ip, dst, op, literals);
+                ip += literals;
+                op += literals;
+
+                if (ip >= end) {
+                    break;
+                }
+
+                int distance = (src[ip++] & 0xFF) | (src[ip++] & 0xFF) << 8;
+                int matchLength = token & 15;
+                if (matchLength == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+
+                int ref = op - distance;
+                if (distance == 0 || ref < 0) {
+                    throw new IOException("Malformed lz4 block, bad match offset " + distance);
+                }
+                // Matches may overlap their own output
+                for (int i = 0; i < matchLength; ++i) {
+                    dst[op + i] = dst[ref + i];
+                }
+                op += matchLength;
+            }
+
+            if (op != dst.length) {
+                throw new IOException("Malformed lz4 block, expected " + dst.length + " bytes but got " + op);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Malformed lz4 block", e);
+        }
+    }
+
+    private static int writeSequence(byte[] src, int anchor, int literals, int distance, int matchLength, byte[] dst, int op) {
+        int token = op++;
+        op = writeLength(literals, dst, op, token, 4);
+        System.arraycopy(src, anchor, dst, op, literals);
+        op += literals;
+        dst[op++] = (byte) distance;
+        dst[op++] = (byte) (distance >>> 8);
+        return writeLength(matchLength - MIN_MATCH, dst, op, token, 0);
+    }
+
+    // Stores the length in the token nibble at the given shift, overflow goes into 255 runs
+    private static int writeLength(int value, byte[] dst, int op, int token, int shift) {
+        if (value >= 15) {
+            dst[token] |= (byte) (15 << shift);
+            value -= 15;
+            while (value >= 255) {
+                dst[op++] = (byte) 255;
+                value -= 255;
+            }
+            dst[op++] = (byte) value;
+        } else {
+            dst[token] |= (byte) (value << shift);
+        }
+        return op;
+    }
+
+    private static int readInt(byte[] src, int index) {
+        return (src[index] & 0xFF) | (src[index + 1] & 0xFF) << 8 | (src[index + 2] & 0xFF) << 16 | (src[index + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,220 @@
+package red.mohist.common.chunk;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import java.util.Arrays;
+import java.util.Collection;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+import red.mohist.configuration.MohistConfig;
+
+/**
+ * Chunks a player should watch but that PlayerChunkMap has not added the player to yet.
+ * Instead of creating every entry of a new view area at once, which loads or generates
+ * all of them in the next ticks, the map drains the queues every tick under a per-player
+ * and a global budget of estimated packet bytes. The order is rebuilt whenever the player
+ * crosses a chunk border or turns: close chunks first, chunks in front of the player before
+ * chunks behind it, chunks that exist on disk before chunks that still have to be generated.
+ * Chunks that left the view while queued are dropped when they come up.
+ */
+public class PlayerChunkSendQueue {
+
+    public static final long NONE = Long.MAX_VALUE;
+    // Nothing measured yet, roughly a full overworld chunk
+    private static final int INITIAL_CHUNK_BYTES = 16384;
+
+    private static volatile int averageChunkBytes = INITIAL_CHUNK_BYTES;
+    private static final Object BUDGET_LOCK = new Object();
+    private static long globalBudget;
+    private static int globalTick = -1;
+
+    private final EntityPlayerMP player;
+    private final LongOpenHashSet queued = new LongOpenHashSet();
+    private long[] order = new long[0];
+    private int next;
+    private boolean dirty;
+    private int sortedX = Integer.MAX_VALUE;
+    private int sortedZ = Integer.MAX_VALUE;
+    private int sortedYaw;
+    private long budget;
+    private int budgetTick = -1;
+
+    public PlayerChunkSendQueue(EntityPlayerMP player) {
+        this.player = player;
+    }
+
+    public static boolean isEnabled() {
+        return MohistConfig.instance != null && MohistConfig.instance.chunkSendQueue.getValue();
+    }
+
+    /**
+     * Feeds the estimate with the uncompressed size of a chunk packet that was built. Called
+     * from the packet workers without locking, an update lost now and then does not matter.
+     */
+    public static void recordChunkBytes(int bytes) {
+        averageChunkBytes = (averageChunkBytes * 15 + bytes) >> 4;
+    }
+
+    public static int getAverageChunkBytes() {
+        return averageChunkBytes;
+    }
+
+    public EntityPlayerMP getPlayer() {
+        return this.player;
+    }
+
+    public void add(int x, int z) {
+        if (this.queued.add(ChunkPos.asLong(x, z))) {
+            this.dirty = true;
+        }
+    }
+
+    public int size() {
+        return this.queued.size();
+    }
+
+    public boolean isEmpty() {
+        return this.queued.isEmpty();
+    }
+
+    /**
+     * Adds queued chunks to the map round robin over all players, one chunk per player and
+     * round, until every queue is empty or out of budget.
+     */
+    public static void drain(Collection<PlayerChunkSendQueue> queues, ChunkGenerated generated, ChunkAdder adder) {
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            for (PlayerChunkSendQueue queue : queues) {
+                if (queue.isEmpty() || !queue.hasBudget()) {
+                    continue;
+                }
+                if (!hasGlobalBudget()) {
+                    return;
+                }
+                long chunk = queue.poll(generated);
+                if (chunk == NONE) {
+                    continue;
+                }
+                if (adder.add(queue.player, (int) chunk, (int) (chunk >>> 32))) {
+                    queue.charge(averageChunkBytes);
+                }
+                progress = true;
+            }
+        }
+    }
+
+    private boolean hasBudget() {
+        int limit = MohistConfig.instance.chunkSendPlayerBytesPerTick.getValue();
+        if (limit <= 0) {
+            return true;
+        }
+        if (this.budgetTick != MinecraftServer.currentTick) {
+            this.budgetTick = MinecraftServer.currentTick;
+            this.budget = limit;
+        }
+        return this.budget > 0;
+    }
+
+    private void charge(int bytes) {
+        this.budget -= bytes;
+        synchronized (BUDGET_LOCK) {
+            globalBudget -= bytes;
+        }
+    }
+
+    private static boolean hasGlobalBudget() {
+        int limit = MohistConfig.instance.chunkSendGlobalBytesPerTick.getValue();
+        if (limit <= 0) {
+            return true;
+        }
+        // Shared by all worlds, they may tick in parallel
+        synchronized (BUDGET_LOCK) {
+            if (globalTick != MinecraftServer.currentTick) {
+                globalTick = MinecraftServer.currentTick;
+                globalBudget = limit;
+            }
+            return globalBudget > 0;
+        }
+    }
+
+    /**
+     * @return the next chunk still in view, or {@link #NONE}
+     */
+    private long poll(ChunkGenerated generated) {
+        // Truncated like PlayerChunkMap, so the view matches the chunks the map loaded
+        int x = (int) this.player.managedPosX >> 4;
+        int z = (int) this.player.managedPosZ >> 4;
+        int yaw = MathHelper.floor(this.player.rotationYaw / 45.0F + 0.5F) & 7;
+        return this.poll(x, z, yaw, this.player.getViewDistance(), generated);
+    }
+
+    /**
+     * @param yaw the look direction in eighths of a turn
+     */
+    long poll(int x, int z, int yaw, int viewDistance, ChunkGenerated generated) {
+        if (this.dirty || x != this.sortedX || z != this.sortedZ || yaw != this.sortedYaw) {
+            this.sort(x, z, yaw, generated);
+        }
+        while (this.next < this.order.length) {
+            long chunk = this.order[this.next++];
+            this.queued.remove(chunk);
+            if (Math.abs((int) chunk - x) <= viewDistance && Math.abs((int) (chunk >>> 32) - z) <= viewDistance) {
+                return chunk;
+            }
+        }
+        return NONE;
+    }
+
+    private void sort(int x, int z, int yaw, ChunkGenerated generated) {
+        this.dirty = false;
+        this.sortedX = x;
+        this.sortedZ = z;
+        this.sortedYaw = yaw;
+
+        // Look direction as a chunk offset, yaw 0 faces +z
+        float angle = yaw * 45.0F * 0.017453292F;
+        double lookX = -MathHelper.sin(angle);
+        double lookZ = MathHelper.cos(angle);
+
+        long[] chunks = this.queued.toLongArray();
+        long[] keys = new long[chunks.length];
+        for (int i = 0; i < chunks.length; ++i) {
+            int cx = (int) chunks[i];
+            int cz = (int) (chunks[i] >>> 32);
+            int dx = cx - x;
+            int dz = cz - z;
+            int score = (dx * dx + dz * dz) * 4;
+            // The ring around the player goes first whatever the direction
+            if (score > 8) {
+                if (dx * lookX + dz * lookZ < 0) {
+                    score *= 2;
+                }
+                if (!generated.isGenerated(cx, cz)) {
+                    score *= 2;
+                }
+            }
+            keys[i] = (long) score << 32 | i;
+        }
+        Arrays.sort(keys);
+        this.order = new long[chunks.length];
+        for (int i = 0; i < keys.length; ++i) {
+            this.order[i] = chunks[(int) keys[i]];
+        }
+        this.next = 0;
+    }
+
+    public interface ChunkGenerated {
+
+        boolean isGenerated(int x, int z);
+    }
+
+    public interface ChunkAdder {
+
+        /**
+         * @return false if the player was already watching the chunk
+         */
+        boolean add(EntityPlayerMP player, int x, int z);
+    }
+}
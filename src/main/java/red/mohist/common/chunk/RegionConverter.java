@@ -0,0 +1,84 @@
+package red.mohist.common.chunk;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import net.minecraft.world.chunk.storage.RegionFileCache;
+import red.mohist.Mohist;
+import red.mohist.common.async.NamedThreadFactory;
+
+/**
+ * Re-encodes every chunk of a world's region files with another codec on a background thread.
+ * Goes through RegionFileCache so it is safe to run against a loaded world.
+ */
+public class RegionConverter {
+
+    private static final Pattern REGION_NAME = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\.mca");
+    private static final AtomicBoolean running = new AtomicBoolean();
+
+    public static boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * @return false if a conversion is already running
+     */
+    public static boolean start(File chunkSaveLocation, ChunkCodec codec, Consumer<String> feedback) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread thread = new NamedThreadFactory("Mohist Region Converter").newThread(() -> {
+            try {
+                convert(chunkSaveLocation, codec, feedback);
+            } catch (Throwable t) {
+                Mohist.LOGGER.error("Region conversion of " + chunkSaveLocation + " failed", t);
+                feedback.accept("Region conversion failed: " + t);
+            } finally {
+                running.set(false);
+            }
+        });
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+        return true;
+    }
+
+    private static void convert(File chunkSaveLocation, ChunkCodec codec, Consumer<String> feedback) {
+        File[] files = new File(chunkSaveLocation, "region").listFiles((dir, name) -> REGION_NAME.matcher(name).matches());
+        if (files == null || files.length == 0) {
+            feedback.accept("No region files found in " + chunkSaveLocation);
+            return;
+        }
+        long start = System.currentTimeMillis();
+        int chunks = 0;
+        int failed = 0;
+        for (int i = 0; i < files.length; i++) {
+            Matcher matcher = REGION_NAME.matcher(files[i].getName());
+            matcher.matches();
+            int regionX = Integer.parseInt(matcher.group(1));
+            int regionZ = Integer.parseInt(matcher.group(2));
+            for (int x = 0; x < 32; x++) {
+                for (int z = 0; z < 32; z++) {
+                    int chunkX = regionX << 5 | x;
+                    int chunkZ = regionZ << 5 | z;
+                    if (!RegionFileCache.chunkExists(chunkSaveLocation, chunkX, chunkZ)) {
+                        continue;
+                    }
+                    try {
+                        if (RegionFileCache.rewriteChunk(chunkSaveLocation, chunkX, chunkZ, codec)) {
+                            chunks++;
+                        }
+                    } catch (Exception e) {
+                        failed++;
+                        Mohist.LOGGER.warn("Could not convert chunk " + chunkX + ", " + chunkZ + " in " + files[i], e);
+                    }
+                }
+            }
+            if ((i + 1) % 16 == 0 || i + 1 == files.length) {
+                feedback.accept("Converted " + (i + 1) + "/" + files.length + " region files (" + chunks + " chunks)");
+            }
+        }
+        feedback.accept("Converted " + chunks + " chunks to " + codec.getName() + " in " + (System.currentTimeMillis() - start) / 1000L + "s" + (failed > 0 ? ", " + failed + " failed (see log)" : ""));
+    }
+}
@@ -0,0 +1,307 @@
+package red.mohist.common.chunk;
+
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import javax.annotation.Nullable;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.AnvilChunkLoader;
+import net.minecraft.world.gen.ChunkProviderServer;
+import red.mohist.Mohist;
+import red.mohist.configuration.MohistConfig;
+
+/**
+ * Generates every chunk within a square radius around a center, walking outwards in a
+ * spiral. ChunkProviderServer.tick drives it on the thread ticking the world, under a time
+ * budget per tick that shrinks when recentTps drops. Terrain for the next chunks is handed
+ * to AsyncChunkGenerator ahead of time when the world supports it. Chunks a few rings
+ * behind the frontier are queued for unloading again, so memory stays flat however large
+ * the radius is. Until then ChunkProviderServer.queueUnload leaves them alone, a dimension
+ * without players would otherwise unload them before their neighbours populate them.
+ * <p>
+ * One ring more than the radius is generated, so the chunks within the radius get
+ * populated. The position in the spiral is saved to mohist-pregen.properties in the
+ * world's region folder every {@link #SAVE_INTERVAL} ticks and when paused, a resumed run
+ * skips what exists already.
+ */
+public class WorldPregenerator {
+
+    private static final String FILE_NAME = "mohist-pregen.properties";
+    private static final int SAVE_INTERVAL = 400;
+    // Population reaches one chunk into the neighbours, two rings behind are kept loaded
+    private static final int KEEP_RINGS = 3;
+
+    private final WorldServer world;
+    private final ChunkProviderServer provider;
+    private final File file;
+    private final int centerX;
+    private final int centerZ;
+    private final int radius;
+    private final long total;
+    private long index;
+    private long submitted;
+    private final LongArrayFIFOQueue loaded = new LongArrayFIFOQueue();
+    private final LongOpenHashSet window = new LongOpenHashSet();
+    private long generated;
+    private long skipped;
+    private final long startIndex;
+    private final long startTime = System.nanoTime();
+    private int lastSave = MinecraftServer.currentTick;
+
+    private WorldPregenerator(WorldServer world, File file, int centerX, int centerZ, int radius, long index) {
+        this.world = world;
+        this.provider = world.getChunkProvider();
+        this.file = file;
+        this.centerX = centerX;
+        this.centerZ = centerZ;
+        this.radius = radius;
+        long side = 2L * (radius + 1) + 1;
+        this.total = side * side;
+        this.index = Math.min(index, this.total);
+        this.submitted = this.index;
+        this.startIndex = this.index;
+    }
+
+    @Nullable
+    public static WorldPregenerator get(WorldServer world) {
+        return world.getChunkProvider().pregenerator;
+    }
+
+    /**
+     * Starts from the center, replacing any saved progress.
+     */
+    public static WorldPregenerator start(WorldServer world, int centerX, int centerZ, int radius) throws IOException {
+        WorldPregenerator pregenerator = new WorldPregenerator(world, getFile(world), centerX, centerZ, radius, 0);
+        pregenerator.save();
+        world.getChunkProvider().pregenerator = pregenerator;
+        return pregenerator;
+    }
+
+    /**
+     * @return the resumed run, or null if the world has no saved progress
+     */
+    @Nullable
+    public static WorldPregenerator resume(WorldServer world) throws IOException {
+        File file = getFile(world);
+        if (!file.isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        try {
+            WorldPregenerator pregenerator = new WorldPregenerator(world, file,
+                    Integer.parseInt(properties.getProperty("centerX")),
+                    Integer.parseInt(properties.getProperty("centerZ")),
+                    Integer.parseInt(properties.getProperty("radius")),
+                    Long.parseLong(properties.getProperty("index")));
+            world.getChunkProvider().pregenerator = pregenerator;
+            return pregenerator;
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new IOException("Malformed " + file, e);
+        }
+    }
+
+    private static File getFile(WorldServer world) throws IOException {
+        if (!(world.getChunkProvider().chunkLoader instanceof AnvilChunkLoader)) {
+            throw new IOException("The world does not use region files");
+        }
+        return new File(((AnvilChunkLoader) world.getChunkProvider().chunkLoader).chunkSaveLocation, FILE_NAME);
+    }
+
+    /**
+     * Stops and keeps the progress for {@link #resume}.
+     */
+    public void pause() throws IOException {
+        this.detach();
+        this.save();
+    }
+
+    /**
+     * Stops and forgets the progress.
+     */
+    public void cancel() {
+        this.detach();
+        this.file.delete();
+    }
+
+    private void detach() {
+        if (this.provider.pregenerator == this) {
+            this.provider.pregenerator = null;
+        }
+        while (!this.loaded.isEmpty()) {
+            this.unload(this.loaded.dequeueLong());
+        }
+    }
+
+    public void tick() {
+        // Nothing could be unloaded behind the frontier
+        if (this.world.disableLevelSaving) {
+            return;
+        }
+        MohistConfig config = MohistConfig.instance;
+        long budget = config.pregenMillisPerTick.getValue() * 1000000L;
+        double tps = MinecraftServer.getServerInst().recentTps[0];
+        int minTps = config.pregenMinTps.getValue();
+        if (tps < 19.5D) {
+            // Linear from the full budget at 19.5 TPS down to nothing at pregenMinTps
+            budget = (long) (budget * Math.max(0D, (tps - minTps) / (19.5D - minTps)));
+        }
+
+        if (budget > 0) {
+            this.generate(System.nanoTime() + budget, config.pregenMaxInFlight.getValue());
+        }
+
+        int keep = KEEP_RINGS * 8 * (ring(this.index) + 1) + config.pregenMaxInFlight.getValue();
+        while (this.loaded.size() > keep) {
+            this.unload(this.loaded.dequeueLong());
+        }
+
+        if (this.index >= this.total) {
+            this.detach();
+            this.file.delete();
+            Mohist.LOGGER.info("Pregenerated " + this.getWorldName() + ": " + this.generated + " chunks generated, " + this.skipped + " existed already");
+        } else if (MinecraftServer.currentTick - this.lastSave >= SAVE_INTERVAL) {
+            try {
+                this.save();
+            } catch (IOException e) {
+                Mohist.LOGGER.warn("Could not save the pregeneration progress of " + this.getWorldName(), e);
+            }
+            Mohist.LOGGER.info("Pregenerating " + this.getWorldName() + ": " + this.getStatus());
+        }
+    }
+
+    private void generate(long deadline, int maxInFlight) {
+        AsyncChunkGenerator async = this.provider.asyncChunkGenerator;
+        for (long end = Math.min(this.total, this.index + maxInFlight); this.submitted < end; ++this.submitted) {
+            long position = position(this.centerX, this.centerZ, this.submitted);
+            async.prepare((int) position, (int) (position >>> 32));
+        }
+        while (this.index < this.total) {
+            long position = position(this.centerX, this.centerZ, this.index);
+            int x = (int) position;
+            int z = (int) (position >>> 32);
+            if (!async.prepare(x, z)) {
+                // Terrain is still on a worker, later chunks wait for it to keep the spiral order
+                break;
+            }
+            ++this.index;
+            if (this.provider.id2ChunkMap.containsKey(position) || this.provider.isChunkGeneratedAt(x, z)) {
+                ++this.skipped;
+                continue;
+            }
+            this.provider.provideChunk(x, z);
+            this.loaded.enqueue(position);
+            this.window.add(position);
+            ++this.generated;
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+        this.submitted = Math.max(this.submitted, this.index);
+    }
+
+    /**
+     * @return true if the chunk was generated by this run and is still needed to populate its neighbours
+     */
+    public boolean isKeptLoaded(int x, int z) {
+        return this.window.contains(ChunkPos.asLong(x, z));
+    }
+
+    private void unload(long position) {
+        this.window.remove(position);
+        int x = (int) position;
+        int z = (int) (position >>> 32);
+        Chunk chunk = this.provider.id2ChunkMap.get(position);
+        // Chunks players look at stay, PlayerChunkMap unloads them when they leave
+        if (chunk != null && !this.world.getPlayerChunkMap().contains(x, z)) {
+            this.provider.queueUnload(chunk);
+        }
+    }
+
+    private void save() throws IOException {
+        this.lastSave = MinecraftServer.currentTick;
+        Properties properties = new Properties();
+        properties.setProperty("centerX", Integer.toString(this.centerX));
+        properties.setProperty("centerZ", Integer.toString(this.centerZ));
+        properties.setProperty("radius", Integer.toString(this.radius));
+        properties.setProperty("index", Long.toString(this.index));
+        try (OutputStream out = new FileOutputStream(this.file)) {
+            properties.store(out, "Mohist world pregeneration, resume with /mohist pregen resume");
+        }
+    }
+
+    /**
+     * @return the chunk at the given step of the spiral, packed like ChunkPos.asLong
+     */
+    static long position(int centerX, int centerZ, long index) {
+        int ring = ring(index);
+        int dx;
+        int dz;
+        if (ring == 0) {
+            dx = 0;
+            dz = 0;
+        } else {
+            long side = 2L * ring;
+            long offset = index - (2L * ring - 1) * (2L * ring - 1);
+            int t = (int) (offset % side);
+            switch ((int) (offset / side)) {
+                case 0:
+                    dx = ring;
+                    dz = -ring + 1 + t;
+                    break;
+                case 1:
+                    dx = ring - 1 - t;
+                    dz = ring;
+                    break;
+                case 2:
+                    dx = -ring;
+                    dz = ring - 1 - t;
+                    break;
+                default:
+                    dx = -ring + 1 + t;
+                    dz = -ring;
+                    break;
+            }
+        }
+        return ChunkPos.asLong(centerX + dx, centerZ + dz);
+    }
+
+    /**
+     * Ring r holds the steps from (2r - 1)^2 up to (2r + 1)^2.
+     */
+    static int ring(long index) {
+        int ring = (int) ((Math.sqrt(index) + 1) / 2);
+        // Correct the floating point estimate at the ring borders
+        while ((2L * ring + 1) * (2L * ring + 1) <= index) {
+            ++ring;
+        }
+        while (ring > 0 && (2L * ring - 1) * (2L * ring - 1) > index) {
+            --ring;
+        }
+        return ring;
+    }
+
+    public String getWorldName() {
+        return this.world.getWorldInfo().getWorldName();
+    }
+
+    public String getStatus() {
+        double seconds = (System.nanoTime() - this.startTime) / 1e9;
+        double rate = seconds > 0 ? (this.index - this.startIndex) / seconds : 0;
+        long eta = rate > 0 ? (long) ((this.total - this.index) / rate) : -1;
+        return String.format("%.1f%% (%d/%d chunks, %d generated, %d existed), %.1f chunks/s, ETA %s",
+                this.index * 100D / this.total, this.index, this.total, this.generated, this.skipped, rate,
+                eta < 0 ? "unknown" : String.format("%d:%02d:%02d", eta / 3600, eta / 60 % 60, eta % 60));
+    }
+}
@@ -0,0 +1,167 @@
+package red.mohist.common.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.MathHelper;
+
+/**
+ * Spatial hash over the entities of one 16x16x16 chunk section, kept in sync with
+ * Chunk.entityLists. Every entity sits in one 4x4x4 cell picked from its bounding box,
+ * entities larger than a cell can account for live in a list that every query scans.
+ * Entities leaving the section before the world moves them to their new chunk are
+ * clamped into the border cells, so a query never misses anything a full scan of the
+ * section would have found.
+ */
+public class EntitySectionIndex {
+
+    private static final int CELL_SHIFT = 2;
+    private static final int CELLS_PER_AXIS = 16 >> CELL_SHIFT;
+    private static final int LARGE = CELLS_PER_AXIS * CELLS_PER_AXIS * CELLS_PER_AXIS;
+    // Entities are indexed by the horizontal center and the bottom of their box
+    private static final double MAX_HALF_WIDTH = 2.0D;
+    private static final double MAX_HEIGHT = 4.0D;
+    // Scanning a handful of entities is cheaper than walking cells
+    private static final int MIN_INDEXED = 16;
+
+    private final int baseX;
+    private final int baseY;
+    private final int baseZ;
+    @SuppressWarnings("unchecked")
+    private final List<Entity>[] cells = new List[LARGE + 1];
+    private int size;
+
+    public EntitySectionIndex(int baseX, int baseY, int baseZ) {
+        this.baseX = baseX;
+        this.baseY = baseY;
+        this.baseZ = baseZ;
+    }
+
+    public static EntitySectionIndex[] createSections(int chunkX, int chunkZ) {
+        EntitySectionIndex[] sections = new EntitySectionIndex[16];
+        for (int i = 0; i < sections.length; i++) {
+            sections[i] = new EntitySectionIndex(chunkX << 4, i << 4, chunkZ << 4);
+        }
+        return sections;
+    }
+
+    public void add(Entity entity) {
+        if (entity.sectionIndex != null) {
+            entity.sectionIndex.remove(entity);
+        }
+        int cell = this.getCell(entity.getEntityBoundingBox());
+        this.getOrCreate(cell).add(entity);
+        entity.sectionIndex = this;
+        entity.sectionIndexCell = cell;
+        ++this.size;
+    }
+
+    public void remove(Entity entity) {
+        if (entity.sectionIndex != this) {
+            return;
+        }
+        List<Entity> list = this.cells[entity.sectionIndexCell];
+        if (list != null && list.remove(entity)) {
+            --this.size;
+        }
+        entity.sectionIndex = null;
+        entity.sectionIndexCell = -1;
+    }
+
+    /**
+     * Called whenever the bounding box of an indexed entity changes.
+     */
+    public void move(Entity entity) {
+        int cell = this.getCell(entity.getEntityBoundingBox());
+        if (cell != entity.sectionIndexCell) {
+            List<Entity> list = this.cells[entity.sectionIndexCell];
+            if (list != null) {
+                list.remove(entity);
+            }
+            this.getOrCreate(cell).add(entity);
+            entity.sectionIndexCell = cell;
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param limit the cost of the alternative, usually the size of the list that would be scanned instead
+     * @return the entities of every cell the box can touch, or null if that is not fewer than limit
+     */
+    @Nullable
+    public List<Entity> getCandidates(AxisAlignedBB aabb, int limit) {
+        if (this.size < MIN_INDEXED || limit <= 0) {
+            return null;
+        }
+        int minX = this.clampCell(MathHelper.floor(aabb.minX - MAX_HALF_WIDTH) - this.baseX);
+        int maxX = this.clampCell(MathHelper.floor(aabb.maxX + MAX_HALF_WIDTH) - this.baseX);
+        int minY = this.clampCell(MathHelper.floor(aabb.minY - MAX_HEIGHT) - this.baseY);
+        int maxY = this.clampCell(MathHelper.floor(aabb.maxY) - this.baseY);
+        int minZ = this.clampCell(MathHelper.floor(aabb.minZ - MAX_HALF_WIDTH) - this.baseZ);
+        int maxZ = this.clampCell(MathHelper.floor(aabb.maxZ + MAX_HALF_WIDTH) - this.baseZ);
+
+        List<Entity> large = this.cells[LARGE];
+        int count = large != null ? large.size() : 0;
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    List<Entity> list = this.cells[index(x, y, z)];
+                    if (list != null) {
+                        count += list.size();
+                    }
+                }
+            }
+        }
+        if (count >= limit) {
+            return null;
+        }
+
+        List<Entity> candidates = new ArrayList<>(count);
+        if (large != null) {
+            candidates.addAll(large);
+        }
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    List<Entity> list = this.cells[index(x, y, z)];
+                    if (list != null) {
+                        candidates.addAll(list);
+                    }
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private List<Entity> getOrCreate(int cell) {
+        List<Entity> list = this.cells[cell];
+        if (list == null) {
+            list = this.cells[cell] = new ArrayList<>(4);
+        }
+        return list;
+    }
+
+    private int getCell(AxisAlignedBB bb) {
+        if ((bb.maxX - bb.minX) * 0.5D > MAX_HALF_WIDTH || (bb.maxZ - bb.minZ) * 0.5D > MAX_HALF_WIDTH || bb.maxY - bb.minY > MAX_HEIGHT) {
+            return LARGE;
+        }
+        int x = this.clampCell(MathHelper.floor((bb.minX + bb.maxX) * 0.5D) - this.baseX);
+        int y = this.clampCell(MathHelper.floor(bb.minY) - this.baseY);
+        int z = this.clampCell(MathHelper.floor((bb.minZ + bb.maxZ) * 0.5D) - this.baseZ);
+        return index(x, y, z);
+    }
+
+    // Block offset inside the section to cell coordinate, outside of the section goes to the border cell
+    private int clampCell(int offset) {
+        return offset < 0 ? 0 : offset > 15 ? CELLS_PER_AXIS - 1 : offset >> CELL_SHIFT;
+    }
+
+    private static int index(int x, int y, int z) {
+        return (y * CELLS_PER_AXIS + z) * CELLS_PER_AXIS + x;
+    }
+}
@@ -0,0 +1,209 @@
+package red.mohist.common.entity;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2LongOpenHashMap;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityTrackerEntry;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
+
+/**
+ * Replacement for the EntityTracker.tick loops, which test every entry against every
+ * player of the world. Players and entries are bucketed by chunk at the start of the tick
+ * and visibility is only re-evaluated between the ones that are close enough to matter:
+ * <ul>
+ * <li>an entry that moved looks at the players around it plus the players tracking it, so
+ * far away trackers are still dropped exactly;</li>
+ * <li>a player that moved looks at the entries around its new position and around the
+ * position of its previous update, which holds every entry it can still be tracking even
+ * after a teleport.</li>
+ * </ul>
+ * The range of an entry never exceeds the tracker's view distance (TrackingRange and
+ * forge ranges are capped by it), so that plus a margin for the slack of the 4 block move
+ * threshold bounds the search. Entries with forceSpawn see all players. Every player still
+ * gets a full pass over all entries once per {@link #FULL_UPDATE_INTERVAL} ticks, so state
+ * that the margin missed converges the way the vanilla loop would have it.
+ */
+public class EntityTrackerGrid {
+
+    // Move threshold slack of both sides plus the lag of the encoded position
+    private static final int MARGIN_BLOCKS = 32;
+    public static final int FULL_UPDATE_INTERVAL = 100;
+
+    private int chunkRadius;
+    private final Long2ObjectOpenHashMap<List<EntityPlayerMP>> playersByChunk = new Long2ObjectOpenHashMap<>();
+    private final Long2ObjectOpenHashMap<List<EntityTrackerEntry>> entriesByChunk = new Long2ObjectOpenHashMap<>();
+    // Chunk of every player's last visibility update
+    private final Reference2LongOpenHashMap<EntityPlayerMP> lastUpdateChunk = new Reference2LongOpenHashMap<>();
+    private final CandidatePlayers candidatePlayers = new CandidatePlayers();
+    private final List<EntityTrackerEntry> candidateEntries = new ArrayList<>();
+    private List<EntityPlayer> allPlayers;
+    private int ticks;
+
+    /**
+     * @param maxTrackingDistance the tracker's current view distance in blocks, which caps every entry's range
+     */
+    public void tick(Collection<EntityTrackerEntry> entries, List<EntityPlayer> players, int maxTrackingDistance) {
+        ++this.ticks;
+        this.chunkRadius = (maxTrackingDistance + MARGIN_BLOCKS + 15) >> 4;
+        this.allPlayers = players;
+        this.playersByChunk.clear();
+        for (EntityPlayer player : players) {
+            if (player instanceof EntityPlayerMP) {
+                this.playersByChunk.computeIfAbsent(chunkKey(player), k -> new ArrayList<>()).add((EntityPlayerMP) player);
+            }
+        }
+
+        List<EntityPlayerMP> moved = new ArrayList<>();
+        for (EntityTrackerEntry entry : entries) {
+            // Only materialized if the entry actually re-evaluates its players
+            this.candidatePlayers.reset(entry);
+            entry.updatePlayerList(this.candidatePlayers);
+
+            if (entry.playerEntitiesUpdated) {
+                Entity entity = entry.getTrackedEntity();
+
+                if (entity instanceof EntityPlayerMP) {
+                    moved.add((EntityPlayerMP) entity);
+                }
+            }
+        }
+
+        List<EntityPlayerMP> full = new ArrayList<>();
+        for (EntityPlayer player : players) {
+            if (player instanceof EntityPlayerMP && (this.ticks + player.getEntityId()) % FULL_UPDATE_INTERVAL == 0) {
+                full.add((EntityPlayerMP) player);
+            }
+        }
+
+        if (!moved.isEmpty()) {
+            this.entriesByChunk.clear();
+            for (EntityTrackerEntry entry : entries) {
+                this.entriesByChunk.computeIfAbsent(chunkKey(entry.getTrackedEntity()), k -> new ArrayList<>()).add(entry);
+            }
+            for (EntityPlayerMP player : moved) {
+                if (full.contains(player)) {
+                    continue;
+                }
+                long chunk = chunkKey(player);
+                long last = this.lastUpdateChunk.containsKey(player) ? this.lastUpdateChunk.getLong(player) : chunk;
+                this.lastUpdateChunk.put(player, chunk);
+                this.collectEntries(chunk, last);
+                for (EntityTrackerEntry entry : this.candidateEntries) {
+                    if (entry.getTrackedEntity() != player) {
+                        entry.updatePlayerEntity(player);
+                    }
+                }
+                this.candidateEntries.clear();
+            }
+        }
+
+        for (EntityPlayerMP player : full) {
+            this.lastUpdateChunk.put(player, chunkKey(player));
+            for (EntityTrackerEntry entry : entries) {
+                if (entry.getTrackedEntity() != player) {
+                    entry.updatePlayerEntity(player);
+                }
+            }
+        }
+
+        if (this.lastUpdateChunk.size() > players.size()) {
+            this.lastUpdateChunk.keySet().removeIf(player -> !players.contains(player));
+        }
+        this.allPlayers = null;
+    }
+
+    // Entries around the current chunk, plus the ones around the last chunk that are not already included
+    private void collectEntries(long chunk, long last) {
+        // Inverse of ChunkPos.asLong
+        int x = (int) chunk;
+        int z = (int) (chunk >>> 32);
+        int lastX = (int) last;
+        int lastZ = (int) (last >>> 32);
+        this.collectEntries(x, z, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        if (chunk != last) {
+            this.collectEntries(lastX, lastZ, x, z);
+        }
+    }
+
+    private void collectEntries(int centerX, int centerZ, int skipX, int skipZ) {
+        for (int cx = centerX - this.chunkRadius; cx <= centerX + this.chunkRadius; ++cx) {
+            for (int cz = centerZ - this.chunkRadius; cz <= centerZ + this.chunkRadius; ++cz) {
+                if (skipX != Integer.MAX_VALUE && Math.abs(cx - skipX) <= this.chunkRadius && Math.abs(cz - skipZ) <= this.chunkRadius) {
+                    continue;
+                }
+                List<EntityTrackerEntry> list = this.entriesByChunk.get(ChunkPos.asLong(cx, cz));
+                if (list != null) {
+                    this.candidateEntries.addAll(list);
+                }
+            }
+        }
+    }
+
+    private static long chunkKey(Entity entity) {
+        return ChunkPos.asLong(MathHelper.floor(entity.posX) >> 4, MathHelper.floor(entity.posZ) >> 4);
+    }
+
+    /**
+     * The players an entry has to look at, computed on first access. EntityTrackerEntry only
+     * reads the list when the entity moved far enough, which is a small part of the entries.
+     */
+    private class CandidatePlayers extends AbstractList<EntityPlayer> {
+
+        private final List<EntityPlayer> players = new ArrayList<>();
+        private EntityTrackerEntry entry;
+        private boolean computed;
+
+        private void reset(EntityTrackerEntry entry) {
+            this.entry = entry;
+            this.computed = false;
+            this.players.clear();
+        }
+
+        private List<EntityPlayer> players() {
+            if (this.computed) {
+                return this.players;
+            }
+            this.computed = true;
+            Entity entity = this.entry.getTrackedEntity();
+            if (entity.forceSpawn) {
+                this.players.addAll(EntityTrackerGrid.this.allPlayers);
+                return this.players;
+            }
+            int radius = EntityTrackerGrid.this.chunkRadius;
+            int x = MathHelper.floor(entity.posX) >> 4;
+            int z = MathHelper.floor(entity.posZ) >> 4;
+            for (int cx = x - radius; cx <= x + radius; ++cx) {
+                for (int cz = z - radius; cz <= z + radius; ++cz) {
+                    List<EntityPlayerMP> list = EntityTrackerGrid.this.playersByChunk.get(ChunkPos.asLong(cx, cz));
+                    if (list != null) {
+                        this.players.addAll(list);
+                    }
+                }
+            }
+            // Trackers out of the search area still have to be removed
+            for (EntityPlayerMP player : this.entry.trackingPlayers) {
+                if (Math.abs((MathHelper.floor(player.posX) >> 4) - x) > radius || Math.abs((MathHelper.floor(player.posZ) >> 4) - z) > radius) {
+                    this.players.add(player);
+                }
+            }
+            return this.players;
+        }
+
+        @Override
+        public EntityPlayer get(int index) {
+            return this.players().get(index);
+        }
+
+        @Override
+        public int size() {
+            return this.players().size();
+        }
+    }
+}
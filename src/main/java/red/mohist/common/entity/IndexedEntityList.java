@@ -0,0 +1,230 @@
+package red.mohist.common.entity;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+import net.minecraft.entity.Entity;
+
+/**
+ * Backing list of World.loadedEntityList. Every entity remembers its slot, so indexOf,
+ * contains and remove are O(1); removal moves another element into the hole instead of
+ * shifting the tail. The list order is not stable, only the tick cursor contract is:
+ * {@link #remove(Entity, int)} keeps every element that was ahead of the cursor ahead of it.
+ * Entities added twice, or to a second list, are still found, just by a linear scan.
+ */
+public class IndexedEntityList extends AbstractList<Entity> implements RandomAccess {
+
+    private Entity[] elements = new Entity[64];
+    private int size;
+    // Set once an entry lost its slot tracking, enables the linear fallback
+    private boolean hasUntracked;
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public Entity get(int index) {
+        this.checkIndex(index);
+        return this.elements[index];
+    }
+
+    @Override
+    public boolean add(Entity entity) {
+        if (this.size == this.elements.length) {
+            this.elements = Arrays.copyOf(this.elements, this.size << 1);
+        }
+        this.elements[this.size] = entity;
+        this.track(entity, this.size);
+        ++this.size;
+        ++this.modCount;
+        return true;
+    }
+
+    @Override
+    public void add(int index, Entity entity) {
+        if (index == this.size) {
+            this.add(entity);
+            return;
+        }
+        this.checkIndex(index);
+        if (this.size == this.elements.length) {
+            this.elements = Arrays.copyOf(this.elements, this.size << 1);
+        }
+        System.arraycopy(this.elements, index, this.elements, index + 1, this.size - index);
+        ++this.size;
+        for (int i = index + 1; i < this.size; ++i) {
+            this.moved(this.elements[i], i - 1, i);
+        }
+        this.elements[index] = entity;
+        this.track(entity, index);
+        ++this.modCount;
+    }
+
+    @Override
+    public Entity set(int index, Entity entity) {
+        this.checkIndex(index);
+        Entity old = this.elements[index];
+        this.untrack(old, index);
+        this.elements[index] = entity;
+        this.track(entity, index);
+        return old;
+    }
+
+    /**
+     * Swap removal, the last element takes the slot.
+     */
+    @Override
+    public Entity remove(int index) {
+        this.checkIndex(index);
+        Entity old = this.elements[index];
+        int last = this.size - 1;
+        if (index != last) {
+            this.elements[index] = this.elements[last];
+            this.moved(this.elements[index], last, index);
+        }
+        this.elements[last] = null;
+        this.size = last;
+        this.untrack(old, index);
+        ++this.modCount;
+        return old;
+    }
+
+    /**
+     * Removes an entity while a tick loop walks the list, with the same cursor contract as
+     * CraftBukkit's shifting removal: if the removed element was already passed the cursor
+     * drops by one and still points at the element being ticked, and every element that was
+     * ahead of the cursor is still ahead of it. Only up to three slots are moved.
+     *
+     * @return the new cursor
+     */
+    public int remove(Entity entity, int cursor) {
+        int index = this.indexOf(entity);
+        if (index == -1) {
+            return cursor;
+        }
+        int last = this.size - 1;
+        if (index > cursor || cursor > last) {
+            this.remove(index);
+            return index > cursor ? cursor : cursor - 1;
+        }
+        if (index < cursor) {
+            // The hole takes the last passed element, which makes room for the current one
+            if (index != cursor - 1) {
+                this.elements[index] = this.elements[cursor - 1];
+                this.moved(this.elements[index], cursor - 1, index);
+            }
+            this.elements[cursor - 1] = this.elements[cursor];
+            this.moved(this.elements[cursor - 1], cursor, cursor - 1);
+        }
+        if (cursor != last) {
+            this.elements[cursor] = this.elements[last];
+            this.moved(this.elements[cursor], last, cursor);
+        }
+        this.elements[last] = null;
+        this.size = last;
+        this.untrack(entity, index);
+        ++this.modCount;
+        return cursor - 1;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = this.indexOf(o);
+        if (index == -1) {
+            return false;
+        }
+        this.remove(index);
+        return true;
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        if (c == this) {
+            boolean modified = this.size > 0;
+            this.clear();
+            return modified;
+        }
+        boolean modified = false;
+        for (Object o : c) {
+            while (this.remove(o)) {
+                modified = true;
+            }
+        }
+        return modified;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (o instanceof Entity) {
+            Entity entity = (Entity) o;
+            int index = entity.loadedEntityListIndex;
+            if (entity.loadedEntityListOwner == this && index < this.size && this.elements[index] == entity) {
+                return index;
+            }
+        }
+        if (this.hasUntracked && o != null) {
+            for (int i = 0; i < this.size; ++i) {
+                if (this.elements[i] == o) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return this.indexOf(o) != -1;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < this.size; ++i) {
+            this.untrack(this.elements[i], i);
+            this.elements[i] = null;
+        }
+        this.size = 0;
+        this.hasUntracked = false;
+        ++this.modCount;
+    }
+
+    private void track(Entity entity, int index) {
+        if (entity == null) {
+            this.hasUntracked = true;
+            return;
+        }
+        IndexedEntityList owner = entity.loadedEntityListOwner;
+        if (owner != null && owner.isTrackedAt(entity, entity.loadedEntityListIndex)) {
+            // Duplicate or still in another world's list, the old slot falls back to scanning
+            owner.hasUntracked = true;
+        }
+        entity.loadedEntityListOwner = this;
+        entity.loadedEntityListIndex = index;
+    }
+
+    private void untrack(Entity entity, int index) {
+        if (entity != null && entity.loadedEntityListOwner == this && entity.loadedEntityListIndex == index) {
+            entity.loadedEntityListOwner = null;
+            entity.loadedEntityListIndex = -1;
+        }
+    }
+
+    private void moved(Entity entity, int from, int to) {
+        if (entity != null && entity.loadedEntityListOwner == this && entity.loadedEntityListIndex == from) {
+            entity.loadedEntityListIndex = to;
+        }
+    }
+
+    private boolean isTrackedAt(Entity entity, int index) {
+        return index >= 0 && index < this.size && this.elements[index] == entity;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+    }
+}
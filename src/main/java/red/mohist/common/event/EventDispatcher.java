@@ -0,0 +1,41 @@
+package red.mohist.common.event;
+
+import java.util.logging.Level;
+import org.bukkit.Bukkit;
+import org.bukkit.event.Event;
+import org.bukkit.plugin.AuthorNagException;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.RegisteredListener;
+import red.mohist.Mohist;
+
+/**
+ * Calls every listener of one baked HandlerList. Implementations are generated by
+ * {@link EventDispatcherGenerator} with the listener loop unrolled, so every listener
+ * gets its own call site and the JIT can inline the executors of hot events.
+ */
+public abstract class EventDispatcher {
+
+    public abstract void dispatch(Event event);
+
+    /**
+     * Reports a listener failure the same way SimplePluginManager.callEvent always did.
+     */
+    public static void handleException(RegisteredListener registration, Event event, Throwable ex) {
+        if (ex instanceof AuthorNagException) {
+            Plugin plugin = registration.getPlugin();
+
+            if (plugin.isNaggable()) {
+                plugin.setNaggable(false);
+
+                Mohist.LOGGER.error(String.format(
+                        "Nag author(s): '%s' of '%s' about the following: %s",
+                        plugin.getDescription().getAuthors(),
+                        plugin.getDescription().getFullName(),
+                        ex.getMessage()
+                ));
+            }
+        } else {
+            Bukkit.getLogger().log(Level.SEVERE, "Could not pass event " + event.getEventName() + " to " + registration.getPlugin().getDescription().getFullName(), ex);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package red.mohist.common.event;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.RegisteredListener;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.INSTANCEOF;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+/**
+ * Generates {@link EventDispatcher} classes. Every baked HandlerList gets a class of its
+ * own, so each unrolled call site only ever sees the executor of one listener and its type
+ * profile stays monomorphic. A class shared between lists of the same shape would see the
+ * executors of all of them. HandlerList only asks for a dispatcher once a bake has been
+ * called {@link org.bukkit.event.HandlerList#getDispatcher() often enough}, so lists that
+ * change all the time do not define a class per change. Each class is defined in a class
+ * loader of its own, so it is unloaded again once its list changes and drops it.
+ */
+public class EventDispatcherGenerator {
+
+    // Past this the dispatch method gets too large for the JIT to compile it
+    public static final int MAX_LISTENERS = 32;
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger(1);
+
+    private static final String DISPATCHER = Type.getInternalName(EventDispatcher.class);
+    private static final String REGISTERED_LISTENER = Type.getInternalName(RegisteredListener.class);
+    private static final String EVENT_EXECUTOR = Type.getInternalName(EventExecutor.class);
+    private static final String LISTENER = Type.getInternalName(Listener.class);
+    private static final String PLUGIN = Type.getInternalName(Plugin.class);
+    private static final String CANCELLABLE = Type.getInternalName(Cancellable.class);
+    private static final String EVENT = Type.getInternalName(Event.class);
+
+    /**
+     * @return a dispatcher calling the listeners in order, or null if there are too many to unroll
+     */
+    public static EventDispatcher create(RegisteredListener[] listeners) {
+        if (listeners.length > MAX_LISTENERS) {
+            return null;
+        }
+        String name = "red.mohist.common.event.generated.GeneratedEventDispatcher" + NEXT_ID.getAndIncrement();
+        byte[] classData = generate(getShape(listeners), name);
+        Class<? extends EventDispatcher> dispatcherClass = new DispatcherClassLoader(EventDispatcher.class.getClassLoader()).define(name, classData).asSubclass(EventDispatcher.class);
+        try {
+            return dispatcherClass.getConstructor(RegisteredListener[].class).newInstance((Object) listeners.clone());
+        } catch (InstantiationException | IllegalAccessException | NoSuchMethodException | InvocationTargetException e) {
+            throw new AssertionError("Unable to initialize generated event dispatcher", e);
+        }
+    }
+
+    // P: plain listener, I: plain listener ignoring cancelled events, C: subclass, called through callEvent
+    private static String getShape(RegisteredListener[] listeners) {
+        StringBuilder shape = new StringBuilder(listeners.length);
+        for (RegisteredListener listener : listeners) {
+            if (listener.getClass() != RegisteredListener.class) {
+                shape.append('C');
+            } else {
+                shape.append(listener.isIgnoringCancelled() ? 'I' : 'P');
+            }
+        }
+        return shape.toString();
+    }
+
+    private static byte[] generate(String shape, String name) {
+        String internalName = name.replace('.', '/');
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        writer.visit(V1_8, ACC_PUBLIC | ACC_FINAL, internalName, null, DISPATCHER, null);
+        for (int i = 0; i < shape.length(); i++) {
+            writer.visitField(ACC_PRIVATE | ACC_FINAL, "registration" + i, "L" + REGISTERED_LISTENER + ";", null, null).visitEnd();
+            if (shape.charAt(i) != 'C') {
+                writer.visitField(ACC_PRIVATE | ACC_FINAL, "executor" + i, "L" + EVENT_EXECUTOR + ";", null, null).visitEnd();
+                writer.visitField(ACC_PRIVATE | ACC_FINAL, "listener" + i, "L" + LISTENER + ";", null, null).visitEnd();
+            }
+        }
+
+        // Constructor, unpacks the array into one field per listener
+        String constructorDesc = "([L" + REGISTERED_LISTENER + ";)V";
+        GeneratorAdapter methodGenerator = new GeneratorAdapter(writer.visitMethod(ACC_PUBLIC, "<init>", constructorDesc, null, null), ACC_PUBLIC, "<init>", constructorDesc);
+        methodGenerator.loadThis();
+        methodGenerator.visitMethodInsn(INVOKESPECIAL, DISPATCHER, "<init>", "()V", false);
+        for (int i = 0; i < shape.length(); i++) {
+            methodGenerator.loadThis();
+            methodGenerator.loadArg(0);
+            methodGenerator.push(i);
+            methodGenerator.visitInsn(AALOAD);
+            methodGenerator.visitFieldInsn(PUTFIELD, internalName, "registration" + i, "L" + REGISTERED_LISTENER + ";");
+            if (shape.charAt(i) != 'C') {
+                methodGenerator.loadThis();
+                methodGenerator.loadArg(0);
+                methodGenerator.push(i);
+                methodGenerator.visitInsn(AALOAD);
+                methodGenerator.visitMethodInsn(INVOKEVIRTUAL, REGISTERED_LISTENER, "getExecutor", "()L" + EVENT_EXECUTOR + ";", false);
+                methodGenerator.visitFieldInsn(PUTFIELD, internalName, "executor" + i, "L" + EVENT_EXECUTOR + ";");
+                methodGenerator.loadThis();
+                methodGenerator.loadArg(0);
+                methodGenerator.push(i);
+                methodGenerator.visitInsn(AALOAD);
+                methodGenerator.visitMethodInsn(INVOKEVIRTUAL, REGISTERED_LISTENER, "getListener", "()L" + LISTENER + ";", false);
+                methodGenerator.visitFieldInsn(PUTFIELD, internalName, "listener" + i, "L" + LISTENER + ";");
+            }
+        }
+        methodGenerator.returnValue();
+        methodGenerator.endMethod();
+
+        // dispatch, the same steps as SimplePluginManager.callEvent and RegisteredListener.callEvent per listener
+        String dispatchDesc = "(L" + EVENT + ";)V";
+        methodGenerator = new GeneratorAdapter(writer.visitMethod(ACC_PUBLIC, "dispatch", dispatchDesc, null, null), ACC_PUBLIC, "dispatch", dispatchDesc);
+        for (int i = 0; i < shape.length(); i++) {
+            char type = shape.charAt(i);
+            Label start = new Label();
+            Label end = new Label();
+            Label handler = new Label();
+            Label next = new Label();
+            methodGenerator.visitTryCatchBlock(start, end, handler, "java/lang/Throwable");
+
+            // if (!registration.getPlugin().isEnabled()) continue;
+            methodGenerator.visitVarInsn(ALOAD, 0);
+            methodGenerator.visitFieldInsn(GETFIELD, internalName, "registration" + i, "L" + REGISTERED_LISTENER + ";");
+            methodGenerator.visitMethodInsn(INVOKEVIRTUAL, REGISTERED_LISTENER, "getPlugin", "()L" + PLUGIN + ";", false);
+            methodGenerator.visitMethodInsn(INVOKEINTERFACE, PLUGIN, "isEnabled", "()Z", true);
+            methodGenerator.visitJumpInsn(IFEQ, next);
+
+            methodGenerator.visitLabel(start);
+            if (type == 'C') {
+                methodGenerator.visitVarInsn(ALOAD, 0);
+                methodGenerator.visitFieldInsn(GETFIELD, internalName, "registration" + i, "L" + REGISTERED_LISTENER + ";");
+                methodGenerator.visitVarInsn(ALOAD, 1);
+                methodGenerator.visitMethodInsn(INVOKEVIRTUAL, REGISTERED_LISTENER, "callEvent", dispatchDesc, false);
+            } else {
+                if (type == 'I') {
+                    // if (event instanceof Cancellable && ((Cancellable) event).isCancelled()) continue;
+                    Label call = new Label();
+                    methodGenerator.visitVarInsn(ALOAD, 1);
+                    methodGenerator.visitTypeInsn(INSTANCEOF, CANCELLABLE);
+                    methodGenerator.visitJumpInsn(IFEQ, call);
+                    methodGenerator.visitVarInsn(ALOAD, 1);
+                    methodGenerator.visitTypeInsn(CHECKCAST, CANCELLABLE);
+                    methodGenerator.visitMethodInsn(INVOKEINTERFACE, CANCELLABLE, "isCancelled", "()Z", true);
+                    methodGenerator.visitJumpInsn(IFNE, end);
+                    methodGenerator.visitLabel(call);
+                }
+                methodGenerator.visitVarInsn(ALOAD, 0);
+                methodGenerator.visitFieldInsn(GETFIELD, internalName, "executor" + i, "L" + EVENT_EXECUTOR + ";");
+                methodGenerator.visitVarInsn(ALOAD, 0);
+                methodGenerator.visitFieldInsn(GETFIELD, internalName, "listener" + i, "L" + LISTENER + ";");
+                methodGenerator.visitVarInsn(ALOAD, 1);
+                methodGenerator.visitMethodInsn(INVOKEINTERFACE, EVENT_EXECUTOR, "execute", "(L" + LISTENER + ";L" + EVENT + ";)V", true);
+            }
+            methodGenerator.visitLabel(end);
+            methodGenerator.visitJumpInsn(GOTO, next);
+
+            // catch (Throwable ex) { EventDispatcher.handleException(registration, event, ex); }
+            methodGenerator.visitLabel(handler);
+            methodGenerator.visitVarInsn(ASTORE, 2);
+            methodGenerator.visitVarInsn(ALOAD, 0);
+            methodGenerator.visitFieldInsn(GETFIELD, internalName, "registration" + i, "L" + REGISTERED_LISTENER + ";");
+            methodGenerator.visitVarInsn(ALOAD, 1);
+            methodGenerator.visitVarInsn(ALOAD, 2);
+            methodGenerator.visitMethodInsn(INVOKESTATIC, DISPATCHER, "handleException", "(L" + REGISTERED_LISTENER + ";L" + EVENT + ";Ljava/lang/Throwable;)V", false);
+            methodGenerator.visitLabel(next);
+        }
+        methodGenerator.returnValue();
+        methodGenerator.endMethod();
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    /**
+     * Holds a single generated class. A class can only be unloaded together with its loader,
+     * and the loader of EventDispatcher lives as long as the server.
+     */
+    private static final class DispatcherClassLoader extends ClassLoader {
+
+        DispatcherClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] data) {
+            return defineClass(name, data, 0, data.length);
+        }
+    }
+}
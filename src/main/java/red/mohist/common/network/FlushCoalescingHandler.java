@@ -0,0 +1,104 @@
+package red.mohist.common.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import net.minecraft.server.MinecraftServer;
+
+/**
+ * Sits in front of the socket of a PLAY connection and holds back flushes, so everything
+ * written during a tick goes out with one flush at the end of it instead of one per
+ * writeAndFlush. NetworkManager.processReceivedPackets requests the tick flush, which runs
+ * on the event loop after the writes the main thread scheduled before it. A burst larger
+ * than the threshold is flushed right away, and flushes pass through once the server stops
+ * ticking, so the kick messages of a shutdown still leave.
+ * <p>
+ * The counters are only written from the event loop; readers get a recent value.
+ */
+public class FlushCoalescingHandler extends ChannelDuplexHandler {
+
+    public static final String NAME = "flush_coalescing";
+
+    private final int thresholdBytes;
+    private ChannelHandlerContext ctx;
+    private int pendingWrites;
+    private int pendingBytes;
+
+    private volatile long writes;
+    private volatile long flushes;
+    private volatile long bytes;
+
+    public FlushCoalescingHandler(int thresholdBytes) {
+        this.thresholdBytes = thresholdBytes;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        int size = msg instanceof ByteBuf ? ((ByteBuf) msg).readableBytes() : 0;
+        ++this.writes;
+        this.bytes += size;
+        ++this.pendingWrites;
+        this.pendingBytes += size;
+        ctx.write(msg, promise);
+        if (this.pendingBytes >= this.thresholdBytes) {
+            this.flushNow(ctx);
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        MinecraftServer server = MinecraftServer.getServerInst();
+        if (server == null || !server.isServerRunning()) {
+            this.flushNow(ctx);
+        }
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        this.flushNow(ctx);
+        ctx.close(promise);
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) {
+        this.flushNow(ctx);
+    }
+
+    /**
+     * Flushes everything written so far, called once per tick from the main thread.
+     */
+    public void tickFlush() {
+        ChannelHandlerContext ctx = this.ctx;
+        if (ctx != null) {
+            ctx.executor().execute(() -> this.flushNow(ctx));
+        }
+    }
+
+    private void flushNow(ChannelHandlerContext ctx) {
+        if (this.pendingWrites == 0) {
+            return;
+        }
+        this.pendingWrites = 0;
+        this.pendingBytes = 0;
+        ++this.flushes;
+        ctx.flush();
+    }
+
+    public long getWrites() {
+        return this.writes;
+    }
+
+    public long getFlushes() {
+        return this.flushes;
+    }
+
+    public long getBytes() {
+        return this.bytes;
+    }
+}
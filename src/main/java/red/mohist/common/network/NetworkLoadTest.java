@@ -0,0 +1,220 @@
+package red.mohist.common.network;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.minecraft.network.NettyVarint21FrameDecoder;
+import net.minecraft.network.NettyVarint21FrameEncoder;
+import net.minecraft.network.PacketBuffer;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Opens fake clients against the server's own port to measure the network stack without
+ * real Minecraft clients. Every client does what a server list ping does: handshake into
+ * STATUS, status request, ping. That goes through accept, the pipeline, the handshake and
+ * status handlers and back, so it shows the accept rate and the round trip latency of the
+ * current transport settings. At most {@link #MAX_CONNECTING} clients are open at once.
+ */
+public class NetworkLoadTest {
+
+    // 1.12.2, the status handshake does not check it
+    private static final int PROTOCOL_VERSION = 340;
+    private static final int MAX_CONNECTING = 64;
+    private static final int TIMEOUT_SECONDS = 10;
+    public static final int MAX_CLIENTS = 10000;
+
+    private static final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * @return false if a test is already running
+     */
+    public static boolean start(CommandSender sender, String host, int port, int clients) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                run(sender, host, port, clients);
+            } catch (Throwable t) {
+                sender.sendMessage(ChatColor.RED + "Network load test failed: " + t);
+            } finally {
+                running.set(false);
+            }
+        }, "Mohist Network Load Test");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    private static void run(CommandSender sender, String host, int port, int clients) throws InterruptedException {
+        sender.sendMessage(ChatColor.GRAY + "Opening " + clients + " clients to " + host + ":" + port + "...");
+        NioEventLoopGroup group = new NioEventLoopGroup(2, new ThreadFactoryBuilder().setNameFormat("Mohist Network Load Test #%d").setDaemon(true).build());
+        Results results = new Results(clients);
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        try {
+            Bootstrap bootstrap = new Bootstrap().group(group).channel(NioSocketChannel.class)
+                    .option(ChannelOption.TCP_NODELAY, true)
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, TIMEOUT_SECONDS * 1000);
+            long start = System.nanoTime();
+            for (int i = 0; i < clients; i++) {
+                results.permits.acquire();
+                Client client = new Client(results, i, host, port);
+                bootstrap.clone().handler(new ChannelInitializer<Channel>() {
+                    @Override
+                    protected void initChannel(Channel channel) {
+                        channel.pipeline().addLast("timeout", new ReadTimeoutHandler(TIMEOUT_SECONDS))
+                                .addLast("splitter", new NettyVarint21FrameDecoder())
+                                .addLast("prepender", new NettyVarint21FrameEncoder())
+                                .addLast("client", client);
+                    }
+                }).connect(address).addListener(future -> {
+                    if (!future.isSuccess()) {
+                        client.finish(false);
+                    }
+                });
+            }
+            if (!results.done.await(TIMEOUT_SECONDS * 2, TimeUnit.SECONDS)) {
+                sender.sendMessage(ChatColor.RED + "" + results.done.getCount() + " clients did not finish in time.");
+            }
+            long elapsed = System.nanoTime() - start;
+
+            int completed = clients - results.failed.get();
+            sender.sendMessage(ChatColor.GOLD + "Network load test:");
+            sender.sendMessage(ChatColor.GRAY + "Clients - " + ChatColor.GREEN + completed + "/" + clients + ChatColor.GRAY + " completed, "
+                    + ChatColor.GREEN + String.format("%.0f", clients / (elapsed / 1e9)) + ChatColor.GRAY + " connections/s");
+            sender.sendMessage(ChatColor.GRAY + "Connect - " + percentiles(results.connect));
+            sender.sendMessage(ChatColor.GRAY + "Status - " + percentiles(results.status));
+            sender.sendMessage(ChatColor.GRAY + "Ping - " + percentiles(results.ping));
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+    private static String percentiles(long[] nanos) {
+        long[] values = Arrays.stream(nanos).filter(v -> v >= 0).sorted().toArray();
+        if (values.length == 0) {
+            return ChatColor.RED + "no samples";
+        }
+        return "p50 " + millis(values, 0.5) + ", p90 " + millis(values, 0.9) + ", p99 " + millis(values, 0.99) + ", max " + millis(values, 1);
+    }
+
+    private static String millis(long[] sorted, double percentile) {
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1);
+        return ChatColor.GREEN + String.format("%.2f", sorted[Math.max(index, 0)] / 1e6) + ChatColor.GRAY + " ms";
+    }
+
+    private static class Results {
+
+        private final long[] connect;
+        private final long[] status;
+        private final long[] ping;
+        private final Semaphore permits = new Semaphore(MAX_CONNECTING);
+        private final CountDownLatch done;
+        private final AtomicInteger failed = new AtomicInteger();
+
+        private Results(int clients) {
+            this.connect = new long[clients];
+            this.status = new long[clients];
+            this.ping = new long[clients];
+            Arrays.fill(this.connect, -1);
+            Arrays.fill(this.status, -1);
+            Arrays.fill(this.ping, -1);
+            this.done = new CountDownLatch(clients);
+        }
+    }
+
+    // Not sharable, every client has its own instance and all callbacks run on its event loop
+    private static class Client extends SimpleChannelInboundHandler<ByteBuf> {
+
+        private final Results results;
+        private final int index;
+        private final String host;
+        private final int port;
+        private final long created = System.nanoTime();
+        private long sent;
+        private boolean finished;
+
+        private Client(Results results, int index, String host, int port) {
+            this.results = results;
+            this.index = index;
+            this.host = host;
+            this.port = port;
+        }
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) {
+            this.sent = System.nanoTime();
+            this.results.connect[this.index] = this.sent - this.created;
+
+            PacketBuffer handshake = new PacketBuffer(ctx.alloc().buffer());
+            handshake.writeVarInt(0x00);
+            handshake.writeVarInt(PROTOCOL_VERSION);
+            handshake.writeString(this.host);
+            handshake.writeShort(this.port);
+            handshake.writeVarInt(1); // STATUS
+            ctx.write(handshake);
+
+            PacketBuffer request = new PacketBuffer(ctx.alloc().buffer());
+            request.writeVarInt(0x00);
+            ctx.writeAndFlush(request);
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, ByteBuf msg) {
+            long now = System.nanoTime();
+            int id = new PacketBuffer(msg).readVarInt();
+            if (id == 0x00) {
+                // Status response, the json is skipped
+                this.results.status[this.index] = now - this.sent;
+                this.sent = now;
+                PacketBuffer ping = new PacketBuffer(ctx.alloc().buffer());
+                ping.writeVarInt(0x01);
+                ping.writeLong(now);
+                ctx.writeAndFlush(ping);
+            } else if (id == 0x01) {
+                this.results.ping[this.index] = now - this.sent;
+                this.finish(true);
+                ctx.close();
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            this.finish(false);
+            ctx.close();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) {
+            this.finish(false);
+        }
+
+        private void finish(boolean success) {
+            if (this.finished) {
+                return;
+            }
+            this.finished = true;
+            if (!success) {
+                this.results.failed.incrementAndGet();
+            }
+            this.results.permits.release();
+            this.results.done.countDown();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package red.mohist.common.network;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelException;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollSocketChannel;
+import java.util.Locale;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import red.mohist.configuration.MohistConfig;
+
+/**
+ * Transport choice and socket options of the server endpoint, from the network section of
+ * mohist.yml. "auto" keeps the vanilla behaviour: epoll when it is available and
+ * use-native-transport is set in server.properties.
+ */
+public class NetworkTransport {
+
+    private static final Logger LOGGER = LogManager.getLogger("Mohist");
+
+    public static boolean useEpoll(boolean nativeTransport) {
+        String transport = MohistConfig.instance.networkTransport.getValue().toLowerCase(Locale.ENGLISH);
+        switch (transport) {
+            case "nio":
+                return false;
+            case "epoll":
+                if (!Epoll.isAvailable()) {
+                    LOGGER.warn("network.transport is epoll, but epoll is not available ({}), falling back to nio", Epoll.unavailabilityCause().toString());
+                    return false;
+                }
+                return true;
+            case "auto":
+                return Epoll.isAvailable() && nativeTransport;
+            default:
+                LOGGER.warn("Unknown network.transport '{}', expected auto, nio or epoll", transport);
+                return Epoll.isAvailable() && nativeTransport;
+        }
+    }
+
+    /**
+     * Applies the socket options to an accepted connection. Options the transport does not
+     * support are skipped, like the vanilla TCP_NODELAY setup does.
+     */
+    public static void configureChild(Channel channel) {
+        MohistConfig config = MohistConfig.instance;
+        setOption(channel, ChannelOption.TCP_NODELAY, config.networkTcpNoDelay.getValue());
+        int sendBuffer = config.networkSendBufferSize.getValue();
+        if (sendBuffer > 0) {
+            setOption(channel, ChannelOption.SO_SNDBUF, sendBuffer);
+        }
+        int low = config.networkWriteBufferLowWaterMark.getValue();
+        int high = config.networkWriteBufferHighWaterMark.getValue();
+        if (low > 0 && high >= low) {
+            setOption(channel, ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(low, high));
+        }
+        if (channel instanceof EpollSocketChannel) {
+            setOption(channel, EpollChannelOption.EPOLL_MODE, config.networkEpollEdgeTriggered.getValue() ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED);
+        }
+    }
+
+    private static <T> void setOption(Channel channel, ChannelOption<T> option, T value) {
+        try {
+            channel.config().setOption(option, value);
+        } catch (ChannelException ignored) {
+        }
+    }
+}
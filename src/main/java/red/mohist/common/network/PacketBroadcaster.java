@@ -0,0 +1,60 @@
+package red.mohist.common.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.util.Collection;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.EnumConnectionState;
+import net.minecraft.network.EnumPacketDirection;
+import net.minecraft.network.NetHandlerPlayServer;
+import net.minecraft.network.Packet;
+import net.minecraft.network.PacketBuffer;
+import red.mohist.configuration.MohistConfig;
+
+/**
+ * Sends one packet to many players by serializing it once. Every connection gets a
+ * retained duplicate of the same buffer, which skips NettyPacketEncoder and still goes
+ * through that connection's compression (with its own threshold), framing and
+ * encryption. Connections with plugin handlers in their pipeline, or with packets still
+ * queued, get the packet object as before.
+ */
+public class PacketBroadcaster {
+
+    private static final int MIN_PLAYERS = 2;
+
+    /**
+     * @return false if nothing was sent and the caller has to send the packet itself
+     */
+    public static boolean broadcast(Packet<?> packet, Collection<EntityPlayerMP> players) {
+        if (players.size() < MIN_PLAYERS || !MohistConfig.instance.packetBroadcast.getValue()) {
+            return false;
+        }
+        ByteBuf encoded = PooledByteBufAllocator.DEFAULT.buffer();
+        try {
+            Integer id = EnumConnectionState.PLAY.getPacketId(EnumPacketDirection.CLIENTBOUND, packet);
+            if (id == null) {
+                encoded.release();
+                return false;
+            }
+            PacketBuffer buffer = new PacketBuffer(encoded);
+            buffer.writeVarInt(id);
+            packet.writePacketData(buffer);
+        } catch (Exception e) {
+            // Let the regular encoder report it per connection
+            encoded.release();
+            return false;
+        }
+
+        try {
+            for (EntityPlayerMP player : players) {
+                NetHandlerPlayServer connection = player.connection;
+                if (connection != null) {
+                    connection.sendEncodedPacket(packet, encoded.retainedDuplicate());
+                }
+            }
+        } finally {
+            encoded.release();
+        }
+        return true;
+    }
+}
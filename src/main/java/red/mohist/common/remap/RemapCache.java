@@ -0,0 +1,196 @@
+package red.mohist.common.remap;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import org.apache.commons.io.FileUtils;
+import red.mohist.Mohist;
+
+/**
+ * Content addressed store of remapped plugin classes under mohist-cache/remap. The key
+ * of an entry hashes the original bytecode together with everything the remapper output
+ * depends on: the mappings, the Mohist build, the remap settings and every class the
+ * inheritance lookups may read, which are the jars of the plugin and its dependencies,
+ * the other plugins, the mods and the class path. Anything changing gives new keys, so
+ * entries never have to be invalidated one by one; a different mapping file or build
+ * clears the directory, and entries of an outdated class path or plugin age out.
+ */
+public class RemapCache {
+
+    // Bump when the remapper output changes without a change of the Mohist version
+    private static final int FORMAT = 1;
+    private static final File DIRECTORY = new File("mohist-cache", "remap");
+    private static final long MAX_UNUSED_AGE = TimeUnit.DAYS.toMillis(30);
+
+    private static volatile String environment;
+    private static final Set<String> used = ConcurrentHashMap.newKeySet();
+    private static final AtomicBoolean writeFailed = new AtomicBoolean();
+
+    /**
+     * Enables the cache, wiping it if it was filled by a different mapping file or build.
+     *
+     * @param settings the remap settings affecting the output
+     */
+    public static void init(File mappings, String settings) {
+        try {
+            Hasher classPath = Hashing.sha256().newHasher();
+            putFiles(classPath, new File("mods"));
+            for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+                if (!entry.isEmpty()) {
+                    putFiles(classPath, new File(entry));
+                }
+            }
+            String current = Hashing.sha256().newHasher()
+                    .putInt(FORMAT)
+                    .putString(String.valueOf(Mohist.getVersion()), StandardCharsets.UTF_8)
+                    .putString(settings, StandardCharsets.UTF_8)
+                    .putBytes(Files.readAllBytes(mappings.toPath()))
+                    .hash().toString();
+            File marker = new File(DIRECTORY, "environment");
+            if (!marker.isFile() || !current.equals(new String(Files.readAllBytes(marker.toPath()), StandardCharsets.UTF_8))) {
+                if (DIRECTORY.exists()) {
+                    FileUtils.deleteDirectory(DIRECTORY);
+                }
+                Files.createDirectories(DIRECTORY.toPath());
+                Files.write(marker.toPath(), current.getBytes(StandardCharsets.UTF_8));
+            }
+            // Not part of the marker, an entry of a different class path is only a miss and ages out
+            environment = current + classPath.hash();
+        } catch (IOException e) {
+            Mohist.LOGGER.warn("Could not prepare the remapped class cache, plugin classes are remapped on every start", e);
+        }
+    }
+
+    public static boolean isEnabled() {
+        return environment != null;
+    }
+
+    // Name, size and modification time, mods and libraries are too large to hash on every start
+    private static void putFiles(Hasher hasher, File file) {
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            if (files != null) {
+                Arrays.sort(files);
+                for (File child : files) {
+                    putFiles(hasher, child);
+                }
+            }
+        } else if (file.isFile()) {
+            hasher.putString(file.getPath(), StandardCharsets.UTF_8)
+                    .putLong(file.length())
+                    .putLong(file.lastModified());
+        }
+    }
+
+    /**
+     * Hashes the plugin jar and the jars of the plugins it depends on. Other plugins in the
+     * same folder are visible to the inheritance lookups as well, they only go in by name,
+     * size and modification time.
+     *
+     * @return the scope for {@link #key}, or null if a jar could not be read
+     */
+    public static String scope(File jar, Collection<File> dependencies) {
+        if (!isEnabled()) {
+            return null;
+        }
+        try {
+            Hasher hasher = Hashing.sha256().newHasher();
+            hasher.putBytes(com.google.common.io.Files.asByteSource(jar).hash(Hashing.sha256()).asBytes());
+            for (File dependency : dependencies) {
+                hasher.putBytes(com.google.common.io.Files.asByteSource(dependency).hash(Hashing.sha256()).asBytes());
+            }
+            File[] plugins = jar.getAbsoluteFile().getParentFile().listFiles((dir, name) -> name.endsWith(".jar"));
+            if (plugins != null) {
+                Arrays.sort(plugins);
+                for (File plugin : plugins) {
+                    hasher.putString(plugin.getName(), StandardCharsets.UTF_8)
+                            .putLong(plugin.length())
+                            .putLong(plugin.lastModified());
+                }
+            }
+            return hasher.hash().toString();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public static String key(String scope, boolean multiVersion, byte[] bytecode) {
+        return Hashing.sha256().newHasher()
+                .putString(environment, StandardCharsets.UTF_8)
+                .putString(scope, StandardCharsets.UTF_8)
+                .putBoolean(multiVersion)
+                .putBytes(bytecode)
+                .hash().toString();
+    }
+
+    /**
+     * @return the remapped bytecode, or null on a miss
+     */
+    public static byte[] get(String key) {
+        Path path = path(key);
+        try {
+            byte[] bytecode = Files.readAllBytes(path);
+            if (used.add(key)) {
+                // Keeps entries of classes that are still loaded from aging out
+                path.toFile().setLastModified(System.currentTimeMillis());
+            }
+            return bytecode;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public static void put(String key, byte[] bytecode) {
+        Path path = path(key);
+        try {
+            Files.createDirectories(path.getParent());
+            Path tmp = Files.createTempFile(path.getParent(), key, ".tmp");
+            Files.write(tmp, bytecode);
+            try {
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            used.add(key);
+        } catch (IOException e) {
+            if (writeFailed.compareAndSet(false, true)) {
+                Mohist.LOGGER.warn("Could not write to the remapped class cache", e);
+            }
+        }
+    }
+
+    /**
+     * Deletes entries nobody used during this start that were not used for a long time either.
+     */
+    public static void prune() {
+        if (!isEnabled()) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - MAX_UNUSED_AGE;
+        try (Stream<Path> files = Files.walk(DIRECTORY.toPath(), 2)) {
+            files.filter(path -> path.toString().endsWith(".class"))
+                    .filter(path -> !used.contains(path.getFileName().toString().replace(".class", "")))
+                    .filter(path -> path.toFile().lastModified() < cutoff)
+                    .forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            // Pruned on the next start
+        }
+    }
+
+    private static Path path(String key) {
+        return new File(new File(DIRECTORY, key.substring(0, 2)), key + ".class").toPath();
+    }
+}
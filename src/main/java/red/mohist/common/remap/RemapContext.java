@@ -10,13 +10,14 @@ import org.objectweb.asm.tree.ClassNode;
  * @date 2019/7/21 9:48 PM
  */
 public class RemapContext {
-    private static final LinkedList<RemapContext> remapStack = new LinkedList<>();
+    // Plugin class loaders remap in parallel, every thread keeps its own stack
+    private static final ThreadLocal<LinkedList<RemapContext>> remapStack = ThreadLocal.withInitial(LinkedList::new);
 
     private ClassNode classNode;
     private PluginDescriptionFile description;
 
     public static LinkedList<RemapContext> getRemapStack() {
-        return remapStack;
+        return remapStack.get();
     }
 
     public PluginDescriptionFile getDescription() {
@@ -38,14 +39,14 @@ public class RemapContext {
     }
 
     public static void push(RemapContext context) {
-        remapStack.push(context);
+        remapStack.get().push(context);
     }
 
     public static RemapContext peek() {
-        return remapStack.peek();
+        return remapStack.get().peek();
     }
 
     public static RemapContext pop() {
-        return remapStack.pop();
+        return remapStack.get().pop();
     }
 }
@@ -0,0 +1,156 @@
+package red.mohist.common.remap;
+
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import org.apache.commons.io.IOUtils;
+import org.bukkit.plugin.PluginDescriptionFile;
+import red.mohist.common.async.NamedThreadFactory;
+import red.mohist.configuration.MohistConfig;
+
+/**
+ * Remaps the classes of a plugin on a pool with one thread per core as soon as the
+ * plugin's class loader is created. The server thread loads plugins one class at a time,
+ * so without this only one class would ever be remapped at once. PluginClassLoader takes
+ * the result when it defines the class. Classes that were never loaded are dropped once
+ * the plugins are enabled, and with the remap cache they only cost time on the first start.
+ * Only the package of the main class is queued, shaded libraries are usually large and
+ * mostly never loaded, so they are remapped on demand like before.
+ */
+public class RemapPrefetcher {
+
+    private static final String[] SHADED_PACKAGES = {"lib.", "libs.", "shaded.", "shade.", "dependencies.", "depend."};
+
+    private static final Set<RemapPrefetcher> active = ConcurrentHashMap.newKeySet();
+    private static ExecutorService pool;
+    private static boolean finished;
+
+    private final Map<String, Future<byte[]>> classes = new ConcurrentHashMap<>();
+
+    private static boolean isEnabled() {
+        MohistConfig config = MohistConfig.instance;
+        // The debug output has to stay in load order
+        return config != null && config.remapPrefetch.getValue() && !config.printRemapPluginClass.getValue() && !config.dumpRemapPluginClass.getValue();
+    }
+
+    private static synchronized ExecutorService getPool() {
+        if (finished || !isEnabled()) {
+            return null;
+        }
+        if (pool == null) {
+            ThreadFactory factory = new NamedThreadFactory("Mohist Remap Thread");
+            pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = factory.newThread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return pool;
+    }
+
+    // Relocated libraries normally live in a subpackage of the plugin like com.example.plugin.libs
+    private static boolean isPluginClass(String name, String pluginPackage) {
+        if (!name.startsWith(pluginPackage)) {
+            return false;
+        }
+        String rest = name.substring(pluginPackage.length());
+        for (String shaded : SHADED_PACKAGES) {
+            if (rest.startsWith(shaded) || rest.contains("." + shaded)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Queues the classes of the plugin's own package, only while the server is starting.
+     *
+     * @return the prefetcher to take the classes from, or null if prefetching is off
+     */
+    public static RemapPrefetcher start(ClassLoader loader, JarFile jar, PluginDescriptionFile description, String cacheScope) {
+        ExecutorService pool = getPool();
+        if (pool == null) {
+            return null;
+        }
+        String main = description.getMain();
+        String pluginPackage = main.substring(0, main.lastIndexOf('.') + 1);
+        RemapPrefetcher prefetcher = new RemapPrefetcher();
+        Enumeration<JarEntry> entries = jar.entries();
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            String path = entry.getName();
+            if (entry.isDirectory() || !path.endsWith(".class") || path.startsWith("META-INF/")) {
+                continue;
+            }
+            String name = path.substring(0, path.length() - ".class".length()).replace('/', '.');
+            if (!isPluginClass(name, pluginPackage)) {
+                continue;
+            }
+            prefetcher.classes.put(name, pool.submit(() -> {
+                // The inheritance lookups read the jar through the plugin's class loader
+                ClassLoaderContext.put(loader);
+                try (InputStream stream = jar.getInputStream(entry)) {
+                    return RemapUtils.remapFindClass(description, name, IOUtils.toByteArray(stream), cacheScope);
+                } finally {
+                    ClassLoaderContext.pop();
+                }
+            }));
+        }
+        active.add(prefetcher);
+        return prefetcher;
+    }
+
+    /**
+     * Called once the plugins are enabled, later class loads remap on the loading thread.
+     */
+    public static void finish() {
+        synchronized (RemapPrefetcher.class) {
+            finished = true;
+            if (pool != null) {
+                pool.shutdownNow();
+                pool = null;
+            }
+        }
+        for (RemapPrefetcher prefetcher : active) {
+            prefetcher.cancel();
+        }
+    }
+
+    /**
+     * Waits for the class if it is still being remapped.
+     *
+     * @return the remapped bytecode, or null if the class was not queued or failed, the caller then remaps it itself
+     */
+    public byte[] take(String name) {
+        Future<byte[]> future = this.classes.remove(name);
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | CancellationException e) {
+            return null;
+        }
+    }
+
+    public void cancel() {
+        active.remove(this);
+        for (Future<byte[]> future : this.classes.values()) {
+            future.cancel(false);
+        }
+        this.classes.clear();
+    }
+}
@@ -11,6 +11,8 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import net.md_5.specialsource.transformer.MavenShade;
 import net.minecraftforge.fml.common.FMLCommonHandler;
 import org.bukkit.plugin.PluginDescriptionFile;
@@ -87,6 +89,9 @@ public class RemapUtils {
                     new BufferedReader(new InputStreamReader(fos)),
                     new MavenShade(relocations),
                     null, false);
+            if (MohistConfig.instance.remapCache.getValue()) {
+                RemapCache.init(nms, "nms=" + MohistConfig.instance.nmsRemap.getValue() + ",reflect=" + MohistConfig.instance.reflectRemap.getValue() + ",multiVersion=" + MohistConfig.instance.multiVersionRemap.getValue());
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -103,46 +108,119 @@ public class RemapUtils {
         jarMapping.initFastMethodMapping(jarRemapper);
     }
 
-    private static final Object remapLock = new Object();
+    // Only serializes the debug output, remapping itself runs in parallel
+    private static final Object printLock = new Object();
+    private static final Map<String, RemapTiming> timings = new ConcurrentHashMap<>();
 
     public static byte[] remapFindClass(PluginDescriptionFile description, String name, byte[] bs) throws IOException {
-        synchronized (remapLock) {
+        return remapFindClass(description, name, bs, null);
+    }
+
+    /**
+     * @param cacheScope the {@link RemapCache#scope} of the plugin, null to always remap
+     */
+    public static byte[] remapFindClass(PluginDescriptionFile description, String name, byte[] bs, String cacheScope) throws IOException {
+        long start = System.nanoTime();
+        boolean cached = false;
+        try {
             if (MohistConfig.instance.printRemapPluginClass.getValue()) {
-                System.out.println("========= before remap ========= ");
-                ASMUtils.printClass(bs);
+                synchronized (printLock) {
+                    return remapClass(description, bs);
+                }
+            }
+            if (cacheScope == null || !RemapCache.isEnabled() || MohistConfig.instance.dumpRemapPluginClass.getValue()) {
+                return remapClass(description, bs);
+            }
+            String key = RemapCache.key(cacheScope, isMultiVersionRemapped(description), bs);
+            byte[] remapped = RemapCache.get(key);
+            if (remapped != null) {
+                cached = true;
+                return remapped;
+            }
+            remapped = remapClass(description, bs);
+            RemapCache.put(key, remapped);
+            return remapped;
+        } finally {
+            timings.computeIfAbsent(description == null ? "(proxy)" : description.getName(), k -> new RemapTiming()).add(System.nanoTime() - start, cached);
+        }
+    }
+
+    private static boolean isMultiVersionRemapped(PluginDescriptionFile description) {
+        return MohistConfig.instance.multiVersionRemap.getValue() && (description == null || MohistConfig.instance.multiVersionRemapPlugins.contains(description.getName()));
+    }
+
+    private static byte[] remapClass(PluginDescriptionFile description, byte[] bs) throws IOException {
+        if (MohistConfig.instance.printRemapPluginClass.getValue()) {
+            System.out.println("========= before remap ========= ");
+            ASMUtils.printClass(bs);
+        }
+        ClassNode classNode = new ClassNode();
+        new ClassReader(bs).accept(classNode, ClassReader.EXPAND_FRAMES);
+        for (Remapper remapper : remappers) {
+            if (remapper instanceof NMSVersionRemapper && !isMultiVersionRemapped(description)) {
+                continue;
             }
-            ClassNode classNode = new ClassNode();
-            new ClassReader(bs).accept(classNode, ClassReader.EXPAND_FRAMES);
-            for (Remapper remapper : remappers) {
-                if (description != null && remapper instanceof NMSVersionRemapper && !MohistConfig.instance.multiVersionRemapPlugins.contains(description.getName())) {
-                    continue;
+            try {
+                RemapContext.push(new RemapContext().setClassNode(classNode).setDescription(description));
+                ClassNode container = new ClassNode();
+                ClassRemapper classRemapper;
+                if (remapper instanceof ClassRemapperSupplier) {
+                    classRemapper = ((ClassRemapperSupplier) remapper).getClassRemapper(container);
+                } else {
+                    classRemapper = new ClassRemapper(container, remapper);
                 }
-                try {
-                    RemapContext.push(new RemapContext().setClassNode(classNode).setDescription(description));
-                    ClassNode container = new ClassNode();
-                    ClassRemapper classRemapper;
-                    if (remapper instanceof ClassRemapperSupplier) {
-                        classRemapper = ((ClassRemapperSupplier) remapper).getClassRemapper(container);
-                    } else {
-                        classRemapper = new ClassRemapper(container, remapper);
-                    }
-                    classNode.accept(classRemapper);
-                    classNode = container;
-                    if (MohistConfig.instance.printRemapPluginClass.getValue()) {
-                        System.out.println("========= after " + remapper.getClass().getSimpleName() + " remap ========= ");
-                        ASMUtils.printClass(classNode);
-                    }
-                } finally {
-                    RemapContext.pop();
+                classNode.accept(classRemapper);
+                classNode = container;
+                if (MohistConfig.instance.printRemapPluginClass.getValue()) {
+                    System.out.println("========= after " + remapper.getClass().getSimpleName() + " remap ========= ");
+                    ASMUtils.printClass(classNode);
                 }
+            } finally {
+                RemapContext.pop();
             }
-            ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
-            classNode.accept(writer);
-            bs = writer.toByteArray();
-            if (MohistConfig.instance.dumpRemapPluginClass.getValue()) {
-                ASMUtils.dump(Paths.get(System.getProperty("user.dir"), "dumpRemapPluginClass"), bs);
+        }
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        classNode.accept(writer);
+        bs = writer.toByteArray();
+        if (MohistConfig.instance.dumpRemapPluginClass.getValue()) {
+            ASMUtils.dump(Paths.get(System.getProperty("user.dir"), "dumpRemapPluginClass"), bs);
+        }
+        return bs;
+    }
+
+    /**
+     * Logs the time spent remapping classes per plugin since the last call, slowest first.
+     */
+    public static void logTimings() {
+        List<Map.Entry<String, RemapTiming>> entries = new ArrayList<>(timings.entrySet());
+        timings.clear();
+        if (entries.isEmpty()) {
+            return;
+        }
+        entries.sort((a, b) -> Long.compare(b.getValue().nanos.sum(), a.getValue().nanos.sum()));
+        long total = 0;
+        for (Map.Entry<String, RemapTiming> entry : entries) {
+            total += entry.getValue().nanos.sum();
+        }
+        Mohist.LOGGER.info(String.format("Remapped plugin classes in %.1f ms (summed over all threads)", total / 1.0E6D));
+        for (Map.Entry<String, RemapTiming> entry : entries) {
+            RemapTiming timing = entry.getValue();
+            Mohist.LOGGER.info(String.format("  %s: %d classes (%d cached), %.1f ms", entry.getKey(), timing.classes.sum(), timing.cached.sum(), timing.nanos.sum() / 1.0E6D));
+        }
+        RemapCache.prune();
+    }
+
+    private static class RemapTiming {
+        private final LongAdder classes = new LongAdder();
+        private final LongAdder cached = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private void add(long time, boolean hit) {
+            classes.increment();
+            if (hit) {
+                cached.increment();
             }
-            return bs;
+            nanos.add(time);
         }
     }
 
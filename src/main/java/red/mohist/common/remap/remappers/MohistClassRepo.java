@@ -2,6 +2,8 @@ package red.mohist.common.remap.remappers;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import net.md_5.specialsource.repo.CachingRepo;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.tree.ClassNode;
@@ -19,6 +21,28 @@ public class MohistClassRepo extends CachingRepo {
         return INSTANCE;
     }
 
+    // Mohist start - the CachingRepo cache is a plain map, the prefetch threads look classes up concurrently
+    private final Map<String, ClassNode> nodes = new ConcurrentHashMap<>();
+
+    /**
+     * Same as {@link #findClass(String)}, but safe to call from several threads. The class
+     * file is read without holding any lock, two threads asking for the same missing class
+     * may both read it and the first one to finish wins.
+     */
+    public ClassNode findClassConcurrent(String internalName) {
+        ClassNode node = this.nodes.get(internalName);
+        if (node != null) {
+            return node;
+        }
+        node = findClass0(internalName);
+        if (node == null) {
+            return null;
+        }
+        ClassNode previous = this.nodes.putIfAbsent(internalName, node);
+        return previous != null ? previous : node;
+    }
+    // Mohist end
+
     @Override
     protected ClassNode findClass0(String internalName) {
         InputStream in = getClassLoder().getResourceAsStream(internalName + ".class");
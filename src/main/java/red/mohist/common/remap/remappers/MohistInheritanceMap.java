@@ -10,9 +10,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import net.md_5.specialsource.InheritanceMap;
 import net.md_5.specialsource.JarRemapper;
 import net.md_5.specialsource.provider.InheritanceProvider;
@@ -24,7 +24,7 @@ import net.md_5.specialsource.provider.InheritanceProvider;
  */
 public class MohistInheritanceMap extends InheritanceMap {
     protected final List<String> emptyList = new ImmutableList.Builder().build();
-    protected final Map<String, List<String>> _inheritanceMap = new HashMap<>();
+    protected final Map<String, List<String>> _inheritanceMap = new ConcurrentHashMap<>();
 
     /**
      * Generate an inheritance map for the given classes
@@ -48,7 +48,7 @@ public class MohistInheritanceProvider implements InheritanceProvider {
     }
 
     protected Set<String> findNormalParents(String className, boolean remap) {
-        ClassNode cn = MohistClassRepo.getInstance().findClass(className);
+        ClassNode cn = MohistClassRepo.getInstance().findClassConcurrent(className); // Mohist
         if (cn == null) {
             if (!remap) {
                 return null;
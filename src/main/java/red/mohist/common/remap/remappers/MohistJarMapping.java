@@ -7,12 +7,12 @@ import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
 import net.md_5.specialsource.InheritanceMap;
 import net.md_5.specialsource.NodeType;
 import net.md_5.specialsource.provider.InheritanceProvider;
@@ -36,9 +36,10 @@ public class MohistJarMapping implements ClassRemapperSupplier {
     public final Map<String, String> classes = new HashMap<>();
     public final Map<String, String> fields = new HashMap<>();
     public final Map<String, String> methods = new HashMap<>();
-    public final Map<String, String> fastMapping = new HashMap<>();
-    public final Set<String> doNotMapField = new HashSet<>();
-    public final Set<String> doNotMapMethod = new HashSet<>();
+    // Filled lazily by reflection lookups and remapping threads
+    public final Map<String, String> fastMapping = new ConcurrentHashMap<>();
+    public final Set<String> doNotMapField = ConcurrentHashMap.newKeySet();
+    public final Set<String> doNotMapMethod = ConcurrentHashMap.newKeySet();
 
     public MohistJarMapping() {
     }
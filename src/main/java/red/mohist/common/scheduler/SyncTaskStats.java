@@ -0,0 +1,119 @@
+package red.mohist.common.scheduler;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Per-plugin numbers about the sync tasks CraftScheduler ran: how long they took, how many
+ * ticks after their due tick they started, and how often the per-tick budget
+ * (perfomance.syncTaskBudgetMicros) made them wait for the next tick. Only the main thread
+ * records and reads them.
+ */
+public class SyncTaskStats {
+
+    /**
+     * Upper bounds in ticks of the lateness buckets, the last bucket holds everything above.
+     */
+    public static final int[] LATE_BOUNDS = {0, 1, 2, 5, 10, 20};
+
+    private static final Map<Plugin, SyncTaskStats> stats = new IdentityHashMap<>();
+    private static long deferredTicks;
+
+    private final Plugin plugin;
+    private long runs;
+    private long nanos;
+    private long maxNanos;
+    private long deferred;
+    private final long[] late = new long[LATE_BOUNDS.length + 1];
+
+    private SyncTaskStats(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    public static SyncTaskStats get(Plugin plugin) {
+        return stats.computeIfAbsent(plugin, SyncTaskStats::new);
+    }
+
+    public static List<SyncTaskStats> getAll() {
+        return new ArrayList<>(stats.values());
+    }
+
+    /**
+     * Ticks in which the budget ran out before every ready task ran.
+     */
+    public static long getDeferredTicks() {
+        return deferredTicks;
+    }
+
+    public static void recordDeferredTick() {
+        ++deferredTicks;
+    }
+
+    public static void reset() {
+        stats.clear();
+        deferredTicks = 0;
+    }
+
+    public void recordRun(long lateTicks, long nanos) {
+        ++this.runs;
+        this.nanos += nanos;
+        this.maxNanos = Math.max(this.maxNanos, nanos);
+        int bucket = 0;
+        while (bucket < LATE_BOUNDS.length && lateTicks > LATE_BOUNDS[bucket]) {
+            ++bucket;
+        }
+        ++this.late[bucket];
+    }
+
+    /**
+     * Counts a ready task that was left for the next tick, once per tick it waits.
+     */
+    public void recordDeferred() {
+        ++this.deferred;
+    }
+
+    public Plugin getPlugin() {
+        return this.plugin;
+    }
+
+    public long getRuns() {
+        return this.runs;
+    }
+
+    public long getNanos() {
+        return this.nanos;
+    }
+
+    public long getMaxNanos() {
+        return this.maxNanos;
+    }
+
+    public long getDeferred() {
+        return this.deferred;
+    }
+
+    /**
+     * @return the runs per lateness bucket, see {@link #LATE_BOUNDS}
+     */
+    public long[] getLateHistogram() {
+        return this.late.clone();
+    }
+
+    /**
+     * @return the upper bound in ticks of the bucket holding the given percentile of the runs, or -1 for the open last bucket
+     */
+    public int getLatePercentile(double percentile) {
+        long target = (long) Math.ceil(this.runs * percentile / 100D);
+        long seen = 0;
+        for (int i = 0; i < LATE_BOUNDS.length; ++i) {
+            seen += this.late[i];
+            if (seen >= target) {
+                return LATE_BOUNDS[i];
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,464 @@
+package red.mohist.common.timings;
+
+import com.google.gson.stream.JsonWriter;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import net.minecraft.server.MinecraftServer;
+import org.bukkit.Bukkit;
+import org.bukkit.command.defaults.TimingsCommand;
+import org.spigotmc.CustomTimingsHandler;
+import red.mohist.configuration.MohistConfig;
+
+/**
+ * Collects the data behind CustomTimingsHandler. Every thread records into its own
+ * accumulators without locking: flat totals per handler, and a tree of the handlers as they
+ * nested on that thread, so time spent in "tickEntity - EntityZombie" is found under the
+ * world whose entityTick ran it and the time of a plugin's listener under what fired the
+ * event. Other threads only read these, values may be a tick stale.
+ * <p>
+ * {@link #tick()} runs on the main thread after every server tick. It folds what each
+ * handler took in that tick into a histogram for the percentiles, counts the ticks over
+ * 50 ms as violations, and keeps the last debug.timingsHistoryTicks ticks in a ring
+ * buffer. {@link #export(File)} writes all of it as JSON.
+ * <p>
+ * {@link #reset()} bumps a generation, each thread clears its own accumulators the next
+ * time it starts a timer and is left out until then.
+ */
+public class TimingsEngine {
+
+    private static final long VIOLATION_NANOS = 50000000L;
+    private static final int INITIAL_HANDLERS = 256;
+
+    private static final Object REGISTRY_LOCK = new Object();
+    private static volatile CustomTimingsHandler[] handlers = new CustomTimingsHandler[INITIAL_HANDLERS];
+    private static volatile boolean[] offThread = new boolean[INITIAL_HANDLERS];
+    private static int nextId;
+
+    private static final List<ThreadTimings> threads = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<ThreadTimings> local = ThreadLocal.withInitial(() -> {
+        ThreadTimings timings = new ThreadTimings(Thread.currentThread());
+        threads.add(timings);
+        return timings;
+    });
+    private static volatile int generation;
+
+    // Main thread only
+    private static TimingsHistogram[] histograms = new TimingsHistogram[INITIAL_HANDLERS];
+    private static long[] violations = new long[INITIAL_HANDLERS];
+    private static long[] tickNanos = new long[INITIAL_HANDLERS];
+    private static TickRecord[] history = new TickRecord[0];
+    private static int historyNext;
+    private static long ticks;
+
+    public static int register(CustomTimingsHandler handler) {
+        synchronized (REGISTRY_LOCK) {
+            int id = nextId++;
+            if (id >= handlers.length) {
+                offThread = Arrays.copyOf(offThread, handlers.length * 2);
+                handlers = Arrays.copyOf(handlers, handlers.length * 2);
+            }
+            handlers[id] = handler;
+            return id;
+        }
+    }
+
+    private static int getHandlerCount() {
+        synchronized (REGISTRY_LOCK) {
+            return nextId;
+        }
+    }
+
+    /**
+     * Starts a timer, and its parent if this is the outermost start of the timer on this thread.
+     */
+    public static void start(int id, int parentId) {
+        ThreadTimings timings = local.get().check();
+        timings.ensure(Math.max(id, parentId));
+        if (timings.depth[id]++ != 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (parentId >= 0 && timings.depth[parentId]++ == 0) {
+            timings.push(parentId, now);
+        }
+        timings.push(id, now);
+    }
+
+    public static void stop(int id, int parentId) {
+        ThreadTimings timings = local.get();
+        if (timings.generation != generation || id >= timings.depth.length || timings.depth[id] == 0 || --timings.depth[id] != 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        timings.pop(id, now);
+        if (parentId >= 0 && timings.depth[parentId] > 0 && --timings.depth[parentId] == 0) {
+            timings.pop(parentId, now);
+        }
+    }
+
+    /**
+     * Adds a section timed off the main thread, it does not count towards the violations.
+     */
+    public static void add(int id, long nanos) {
+        ThreadTimings timings = local.get().check();
+        timings.ensure(id);
+        timings.add(id, timings.root.child(id), nanos);
+        if (!offThread[id]) {
+            // register() may be replacing the array, a flag set in the old one would be lost
+            synchronized (REGISTRY_LOCK) {
+                offThread[id] = true;
+            }
+        }
+    }
+
+    public static void reset() {
+        ++generation;
+        threads.removeIf(timings -> !timings.thread.isAlive());
+        Arrays.fill(histograms, null);
+        Arrays.fill(violations, 0);
+        Arrays.fill(tickNanos, 0);
+        Arrays.fill(history, null);
+        historyNext = 0;
+        ticks = 0;
+    }
+
+    /**
+     * Called on the main thread after every server tick.
+     */
+    public static void tick() {
+        // Spigot reset the depths every tick, in case a timer was left running by an exception
+        local.get().check().clearStack();
+
+        int count = getHandlerCount();
+        if (count > tickNanos.length) {
+            int size = Math.max(count, tickNanos.length * 2);
+            tickNanos = Arrays.copyOf(tickNanos, size);
+            violations = Arrays.copyOf(violations, size);
+            histograms = Arrays.copyOf(histograms, size);
+        }
+        int gen = generation;
+        for (ThreadTimings timings : threads) {
+            if (timings.generation != gen) {
+                continue;
+            }
+            long[] total = timings.total;
+            if (timings.seenGeneration != gen || timings.seen.length < total.length) {
+                timings.seen = timings.seenGeneration != gen ? new long[total.length] : Arrays.copyOf(timings.seen, total.length);
+                timings.seenGeneration = gen;
+            }
+            long[] seen = timings.seen;
+            for (int i = 0; i < total.length && i < count; ++i) {
+                long value = total[i];
+                if (value > seen[i]) {
+                    tickNanos[i] += value - seen[i];
+                    seen[i] = value;
+                }
+            }
+        }
+
+        int active = 0;
+        for (int i = 0; i < count; ++i) {
+            if (tickNanos[i] > 0) {
+                ++active;
+            }
+        }
+        int[] ids = new int[active];
+        long[] nanos = new long[active];
+        boolean[] offThread = TimingsEngine.offThread;
+        for (int i = 0, j = 0; i < count; ++i) {
+            long value = tickNanos[i];
+            if (value == 0) {
+                continue;
+            }
+            tickNanos[i] = 0;
+            ids[j] = i;
+            nanos[j++] = value;
+            if (histograms[i] == null) {
+                histograms[i] = new TimingsHistogram();
+            }
+            histograms[i].record(value);
+            if (value > VIOLATION_NANOS && !offThread[i]) {
+                violations[i] += value / VIOLATION_NANOS;
+            }
+        }
+        ++ticks;
+
+        int size = MohistConfig.instance == null ? 600 : Math.max(0, MohistConfig.instance.timingsHistoryTicks.getValue());
+        if (history.length != size) {
+            history = new TickRecord[size];
+            historyNext = 0;
+        }
+        if (size > 0) {
+            history[historyNext] = new TickRecord(MinecraftServer.currentTick, System.currentTimeMillis(), ids, nanos);
+            historyNext = (historyNext + 1) % size;
+        }
+    }
+
+    public static long getTotal(int id) {
+        long total = 0;
+        for (ThreadTimings timings : threads) {
+            if (timings.generation == generation && id < timings.total.length) {
+                total += timings.total[id];
+            }
+        }
+        return total;
+    }
+
+    public static long getCount(int id) {
+        long count = 0;
+        for (ThreadTimings timings : threads) {
+            if (timings.generation == generation && id < timings.count.length) {
+                count += timings.count[id];
+            }
+        }
+        return count;
+    }
+
+    public static long getViolations(int id) {
+        return id < violations.length ? violations[id] : 0;
+    }
+
+    /**
+     * Writes everything collected since the last reset as JSON. Main thread only.
+     */
+    public static void export(File file) throws IOException {
+        int count = getHandlerCount();
+        CustomTimingsHandler[] handlers = TimingsEngine.handlers;
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8); JsonWriter json = new JsonWriter(out)) {
+            json.beginObject();
+            json.name("version").value(Bukkit.getVersion());
+            json.name("created").value(System.currentTimeMillis());
+            json.name("sampleNanos").value(System.nanoTime() - TimingsCommand.timingStart);
+            json.name("ticks").value(ticks);
+
+            json.name("handlers").beginArray();
+            for (int id = 0; id < count; ++id) {
+                long calls = getCount(id);
+                if (calls == 0) {
+                    continue;
+                }
+                CustomTimingsHandler handler = handlers[id];
+                TimingsHistogram histogram = id < histograms.length ? histograms[id] : null;
+                json.beginObject();
+                json.name("id").value(id);
+                json.name("name").value(handler.getName());
+                if (handler.getParent() != null) {
+                    json.name("parent").value(handler.getParent().getId());
+                }
+                json.name("total").value(getTotal(id));
+                json.name("count").value(calls);
+                json.name("violations").value(getViolations(id));
+                if (histogram != null) {
+                    json.name("ticks").value(histogram.getCount());
+                    json.name("p50").value(histogram.getPercentile(50));
+                    json.name("p95").value(histogram.getPercentile(95));
+                    json.name("p99").value(histogram.getPercentile(99));
+                    json.name("max").value(histogram.getMax());
+                }
+                json.endObject();
+            }
+            json.endArray();
+
+            json.name("threads").beginArray();
+            for (ThreadTimings timings : threads) {
+                if (timings.generation != generation || timings.root.children.length == 0) {
+                    continue;
+                }
+                json.beginObject();
+                json.name("thread").value(timings.thread.getName());
+                json.name("children");
+                writeChildren(json, timings.root, handlers);
+                json.endObject();
+            }
+            json.endArray();
+
+            json.name("history").beginArray();
+            for (int i = 0; i < history.length; ++i) {
+                TickRecord record = history[(historyNext + i) % history.length];
+                if (record == null) {
+                    continue;
+                }
+                json.beginObject();
+                json.name("tick").value(record.tick);
+                json.name("time").value(record.time);
+                json.name("handlers").beginObject();
+                for (int j = 0; j < record.ids.length; ++j) {
+                    json.name(Integer.toString(record.ids[j])).value(record.nanos[j]);
+                }
+                json.endObject();
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        }
+    }
+
+    private static void writeChildren(JsonWriter json, Node node, CustomTimingsHandler[] handlers) throws IOException {
+        json.beginArray();
+        for (Node child : node.children) {
+            json.beginObject();
+            json.name("id").value(child.id);
+            json.name("name").value(handlers[child.id].getName());
+            json.name("total").value(child.total);
+            json.name("count").value(child.count);
+            if (child.children.length > 0) {
+                json.name("children");
+                writeChildren(json, child, handlers);
+            }
+            json.endObject();
+        }
+        json.endArray();
+    }
+
+    private static class ThreadTimings {
+
+        private final Thread thread;
+        private volatile int generation = TimingsEngine.generation;
+        private long[] total = new long[INITIAL_HANDLERS];
+        private long[] count = new long[INITIAL_HANDLERS];
+        private int[] depth = new int[INITIAL_HANDLERS];
+        private Node root = new Node(-1);
+        private int[] stackIds = new int[16];
+        private Node[] stackNodes = new Node[16];
+        private long[] stackStarts = new long[16];
+        private int size;
+        // Main thread only, what tick() has accounted for
+        private long[] seen = new long[0];
+        private int seenGeneration = -1;
+
+        private ThreadTimings(Thread thread) {
+            this.thread = thread;
+        }
+
+        private ThreadTimings check() {
+            int current = TimingsEngine.generation;
+            if (this.generation != current) {
+                this.total = new long[this.total.length];
+                this.count = new long[this.count.length];
+                this.depth = new int[this.depth.length];
+                this.root = new Node(-1);
+                this.size = 0;
+                this.generation = current;
+            }
+            return this;
+        }
+
+        private void ensure(int id) {
+            if (id >= this.depth.length) {
+                int size = Math.max(id + 1, this.depth.length * 2);
+                this.depth = Arrays.copyOf(this.depth, size);
+                this.count = Arrays.copyOf(this.count, size);
+                this.total = Arrays.copyOf(this.total, size);
+            }
+        }
+
+        private void push(int id, long now) {
+            if (this.size == this.stackIds.length) {
+                this.stackIds = Arrays.copyOf(this.stackIds, this.size * 2);
+                this.stackNodes = Arrays.copyOf(this.stackNodes, this.size * 2);
+                this.stackStarts = Arrays.copyOf(this.stackStarts, this.size * 2);
+            }
+            Node parent = this.size == 0 ? this.root : this.stackNodes[this.size - 1];
+            this.stackIds[this.size] = id;
+            this.stackNodes[this.size] = parent.child(id);
+            this.stackStarts[this.size++] = now;
+        }
+
+        /**
+         * Closes the timer and whatever an exception left running inside it.
+         */
+        private void pop(int id, long now) {
+            int index = this.size - 1;
+            while (index >= 0 && this.stackIds[index] != id) {
+                --index;
+            }
+            if (index < 0) {
+                return;
+            }
+            while (this.size > index) {
+                int top = --this.size;
+                int topId = this.stackIds[top];
+                this.add(topId, this.stackNodes[top], now - this.stackStarts[top]);
+                this.stackNodes[top] = null;
+                if (top != index) {
+                    this.depth[topId] = 0;
+                }
+            }
+        }
+
+        private void add(int id, Node node, long nanos) {
+            this.total[id] += nanos;
+            ++this.count[id];
+            node.total += nanos;
+            ++node.count;
+        }
+
+        private void clearStack() {
+            while (this.size > 0) {
+                int top = --this.size;
+                this.depth[this.stackIds[top]] = 0;
+                this.stackNodes[top] = null;
+            }
+        }
+    }
+
+    private static class Node {
+
+        private static final Node[] NONE = new Node[0];
+
+        private final int id;
+        private long total;
+        private long count;
+        // Looked up by the owning thread, children is what other threads read
+        private Int2ObjectOpenHashMap<Node> lookup;
+        private Node last;
+        private volatile Node[] children = NONE;
+
+        private Node(int id) {
+            this.id = id;
+        }
+
+        private Node child(int id) {
+            Node last = this.last;
+            if (last != null && last.id == id) {
+                return last;
+            }
+            if (this.lookup == null) {
+                this.lookup = new Int2ObjectOpenHashMap<>();
+            }
+            Node child = this.lookup.get(id);
+            if (child == null) {
+                child = new Node(id);
+                this.lookup.put(id, child);
+                Node[] children = Arrays.copyOf(this.children, this.children.length + 1);
+                children[children.length - 1] = child;
+                this.children = children;
+            }
+            this.last = child;
+            return child;
+        }
+    }
+
+    private static class TickRecord {
+
+        private final int tick;
+        private final long time;
+        private final int[] ids;
+        private final long[] nanos;
+
+        private TickRecord(int tick, long time, int[] ids, long[] nanos) {
+            this.tick = tick;
+            this.time = time;
+            this.ids = ids;
+            this.nanos = nanos;
+        }
+    }
+}
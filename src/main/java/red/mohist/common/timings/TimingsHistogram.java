@@ -0,0 +1,62 @@
+package red.mohist.common.timings;
+
+/**
+ * Log-linear histogram of nanosecond values, four buckets per power of two, so a percentile
+ * is off by less than 25%. Not thread-safe.
+ */
+public class TimingsHistogram {
+
+    private static final int BUCKETS = 248;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+    private long max;
+
+    private static int bucket(long value) {
+        if (value < 4) {
+            return (int) Math.max(0, value);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        return (exponent - 1) * 4 + (int) ((value >>> (exponent - 2)) & 3);
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        int shift = bucket / 4 - 1;
+        return ((4L + bucket % 4) << shift) + (1L << shift) - 1;
+    }
+
+    public void record(long value) {
+        ++this.counts[bucket(value)];
+        ++this.total;
+        this.max = Math.max(this.max, value);
+    }
+
+    public long getCount() {
+        return this.total;
+    }
+
+    public long getMax() {
+        return this.max;
+    }
+
+    /**
+     * @return the upper bound of the bucket holding the given percentile, capped at the largest value seen
+     */
+    public long getPercentile(double percentile) {
+        if (this.total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(this.total * percentile / 100D));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += this.counts[i];
+            if (seen >= target) {
+                return Math.min(upperBound(i), this.max);
+            }
+        }
+        return this.max;
+    }
+}
@@ -0,0 +1,230 @@
+package red.mohist.common.world;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import javax.annotation.Nullable;
+import net.minecraft.util.math.BlockPos;
+import net.minecraftforge.common.util.BlockSnapshot;
+
+/**
+ * World.capturedBlockSnapshots with a position index next to the list, so tree capture
+ * does not compare every captured block for each getBlockState/setBlockState. The index
+ * maps a position to its first snapshot, which stays valid however the list shifts.
+ * {@link #capture} keeps the vanilla order, the earlier snapshot of the position is removed
+ * and the new one appended, so the replay and StructureGrowEvent see the same list as before.
+ * Appends and removals keep the index current while every position is captured once,
+ * anything else marks it stale and the next lookup rebuilds it.
+ */
+public class CapturedBlockSnapshotList extends ArrayList<BlockSnapshot> {
+
+    private final Long2ObjectOpenHashMap<BlockSnapshot> index = new Long2ObjectOpenHashMap<>();
+    private boolean stale;
+    // Forge's captureBlockSnapshots appends without removing, a position may then be in the list twice
+    private boolean duplicates;
+
+    /**
+     * @return the first captured snapshot at the position
+     */
+    @Nullable
+    public static BlockSnapshot find(List<BlockSnapshot> snapshots, BlockPos pos) {
+        if (snapshots instanceof CapturedBlockSnapshotList) {
+            return ((CapturedBlockSnapshotList) snapshots).get(pos);
+        }
+        for (BlockSnapshot snapshot : snapshots) {
+            if (snapshot.getPos().equals(pos)) {
+                return snapshot;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Captures a snapshot like vanilla, the first snapshot already captured at its position
+     * is removed and the new one appended.
+     */
+    public static void capture(List<BlockSnapshot> snapshots, BlockSnapshot snapshot) {
+        if (snapshots instanceof CapturedBlockSnapshotList) {
+            ((CapturedBlockSnapshotList) snapshots).capture(snapshot);
+            return;
+        }
+        BlockSnapshot old = find(snapshots, snapshot.getPos());
+        if (old != null) {
+            snapshots.remove(old);
+        }
+        snapshots.add(snapshot);
+    }
+
+    public void capture(BlockSnapshot snapshot) {
+        BlockSnapshot old = this.get(snapshot.getPos());
+        if (old != null) {
+            super.remove(this.slotOf(old));
+            if (this.duplicates) {
+                // The next snapshot of the position, if any, is the first one now
+                this.stale = true;
+            } else {
+                this.index.remove(old.getPos().toLong());
+            }
+        }
+        this.add(snapshot);
+    }
+
+    @Nullable
+    public BlockSnapshot get(BlockPos pos) {
+        if (this.isEmpty()) {
+            return null;
+        }
+        if (this.stale) {
+            this.rebuild();
+        }
+        return this.index.get(pos.toLong());
+    }
+
+    // Identity, BlockSnapshot.equals compares the whole state
+    private int slotOf(BlockSnapshot snapshot) {
+        if (this.duplicates) {
+            for (int i = 0; i < this.size(); i++) {
+                if (super.get(i) == snapshot) {
+                    return i;
+                }
+            }
+        } else {
+            // Recently captured blocks are the ones captured again
+            for (int i = this.size() - 1; i >= 0; i--) {
+                if (super.get(i) == snapshot) {
+                    return i;
+                }
+            }
+        }
+        throw new IllegalStateException("Indexed snapshot is not in the list");
+    }
+
+    @Override
+    public boolean add(BlockSnapshot snapshot) {
+        super.add(snapshot);
+        if (!this.stale && this.index.putIfAbsent(snapshot.getPos().toLong(), snapshot) != null) {
+            this.duplicates = true;
+        }
+        return true;
+    }
+
+    @Override
+    public BlockSnapshot remove(int i) {
+        BlockSnapshot snapshot = super.remove(i);
+        if (!this.stale && this.index.get(snapshot.getPos().toLong()) == snapshot) {
+            if (this.duplicates) {
+                this.stale = true;
+            } else {
+                this.index.remove(snapshot.getPos().toLong());
+            }
+        }
+        return snapshot;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int i = this.indexOf(o);
+        if (i < 0) {
+            return false;
+        }
+        this.remove(i);
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        this.index.clear();
+        this.stale = false;
+        this.duplicates = false;
+    }
+
+    // The clone is handed out for replay, it must not share the index
+    @Override
+    public Object clone() {
+        return new ArrayList<>(this);
+    }
+
+    @Override
+    public void add(int i, BlockSnapshot snapshot) {
+        super.add(i, snapshot);
+        this.stale = true;
+    }
+
+    @Override
+    public BlockSnapshot set(int i, BlockSnapshot snapshot) {
+        this.stale = true;
+        return super.set(i, snapshot);
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends BlockSnapshot> c) {
+        this.stale = true;
+        return super.addAll(c);
+    }
+
+    @Override
+    public boolean addAll(int i, Collection<? extends BlockSnapshot> c) {
+        this.stale = true;
+        return super.addAll(i, c);
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        this.stale = true;
+        return super.removeAll(c);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        this.stale = true;
+        return super.retainAll(c);
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super BlockSnapshot> filter) {
+        this.stale = true;
+        return super.removeIf(filter);
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        this.stale = true;
+        super.removeRange(fromIndex, toIndex);
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<BlockSnapshot> operator) {
+        this.stale = true;
+        super.replaceAll(operator);
+    }
+
+    @Override
+    public void sort(Comparator<? super BlockSnapshot> c) {
+        this.stale = true;
+        super.sort(c);
+    }
+
+    @Override
+    public List<BlockSnapshot> subList(int fromIndex, int toIndex) {
+        // Sub lists write through without going through this class
+        this.stale = true;
+        return super.subList(fromIndex, toIndex);
+    }
+
+    private void rebuild() {
+        this.index.clear();
+        this.duplicates = false;
+        for (int i = 0; i < this.size(); i++) {
+            BlockSnapshot snapshot = super.get(i);
+            if (this.index.putIfAbsent(snapshot.getPos().toLong(), snapshot) != null) {
+                this.duplicates = true;
+            }
+        }
+        this.stale = false;
+    }
+}
@@ -27,14 +27,36 @@ public class MohistConfig extends ConfigBase{
     public final BoolSetting dumpRemapPluginClass = new BoolSetting(this, "remap.dumpRemapPluginClass", false, "dumpRemapPluginClass");
     public final BoolSetting printRemapPluginClass = new BoolSetting(this, "remap.printRemapPluginClass", false, "printRemapPluginClass");
     public final BoolSetting printInvalidMapping = new BoolSetting(this, "debug.printInvalidMapping", false, "printInvalidMapping");
+    public final IntSetting timingsHistoryTicks = new IntSetting(this, "debug.timingsHistoryTicks", 600, "Ticks of per-handler timings kept for /timings export, 0 keeps none");
     public final BoolSetting nmsRemap = new BoolSetting(this, "remap.nmsRemap", true, "Compatible with nms plugin");
     public final BoolSetting reflectRemap = new BoolSetting(this, "remap.reflectRemap", true, "Compatible reflection plugin");
+    public final BoolSetting remapCache = new BoolSetting(this, "remap.cache", true, "Keep remapped plugin classes in mohist-cache to skip remapping on the next start");
+    public final BoolSetting remapPrefetch = new BoolSetting(this, "remap.prefetch", true, "Remap the classes of each plugin jar on all cores while plugins load");
 
     public final BoolSetting multiVersionRemap = new BoolSetting(this, "remap.multiVersionRemap", false, "Compatible with multiple versions of nms");
     public final StringArraySetting multiVersionRemapPlugins = new StringArraySetting(this, "remap.multiVersionRemapPlugins", "", "Need a list of compatible plugins");
 
     public final IntSetting entityCollideFrequency = new IntSetting(this, "perfomance.entityCollideFrequency",2,"Entity Collide Frequency");
     public final IntSetting maxEntityCollisionsPerTick = new IntSetting(this, "perfomance.maxEntityCollisionsPerTick",8,"Max Entity Collisions PerTick");
+    public final BoolSetting parallelWorldTicking = new BoolSetting(this, "perfomance.parallelWorldTicking", false, "Tick worlds in parallel, plugins and mods must be thread-safe");
+    public final IntSetting parallelWorldTickingThreads = new IntSetting(this, "perfomance.parallelWorldTickingThreads", 0, "Parallel world ticking threads, 0 uses one per CPU core");
+    public final BoolSetting entityTrackerGrid = new BoolSetting(this, "perfomance.entityTrackerGrid", true, "Only update entity tracking between players and entities in nearby chunks");
+    public final BoolSetting packetBroadcast = new BoolSetting(this, "perfomance.packetBroadcast", true, "Serialize entity packets once for all players tracking the entity");
+    public final BoolSetting flushCoalescing = new BoolSetting(this, "perfomance.flushCoalescing", true, "Flush player connections once per tick instead of once per packet");
+    public final IntSetting flushCoalescingThreshold = new IntSetting(this, "perfomance.flushCoalescingThreshold", 32768, "Bytes written to a connection within a tick that flush it early");
+    public final BoolSetting generatedEventDispatcher = new BoolSetting(this, "perfomance.generatedEventDispatcher", true, "Call the listeners of hot events through a generated class instead of a loop");
+    public final IntSetting asyncPoolThreads = new IntSetting(this, "perfomance.asyncPoolThreads", 0, "Threads the async task pool starts before tasks have to queue, 0 uses one per CPU core and at least 4");
+    public final IntSetting asyncPoolMaxThreads = new IntSetting(this, "perfomance.asyncPoolMaxThreads", 256, "Threads the async task pool may grow to while tasks block");
+    public final IntSetting asyncPoolMaxPerPlugin = new IntSetting(this, "perfomance.asyncPoolMaxPerPlugin", 0, "Async tasks a plugin may run at once, 0 for half of asyncPoolMaxThreads");
+    public final IntSetting asyncPoolGrowMillis = new IntSetting(this, "perfomance.asyncPoolGrowMillis", 50, "Milliseconds a queued async task waits while all threads are busy before the pool grows");
+    public final IntSetting syncTaskBudgetMicros = new IntSetting(this, "perfomance.syncTaskBudgetMicros", 0, "Microseconds per tick the scheduler may spend on sync plugin tasks, ready tasks left over run first in the next tick, 0 runs all of them");
+
+    public final StringSetting networkTransport = new StringSetting(this, "network.transport", "auto", "Server socket transport: auto (epoll if available and use-native-transport is on), nio or epoll");
+    public final BoolSetting networkEpollEdgeTriggered = new BoolSetting(this, "network.epollEdgeTriggered", true, "Use edge-triggered mode for epoll connections, false uses level-triggered");
+    public final BoolSetting networkTcpNoDelay = new BoolSetting(this, "network.tcpNoDelay", true, "Disable Nagle's algorithm on player connections");
+    public final IntSetting networkSendBufferSize = new IntSetting(this, "network.sendBufferSize", 0, "SO_SNDBUF of player connections in bytes, 0 keeps the OS default");
+    public final IntSetting networkWriteBufferLowWaterMark = new IntSetting(this, "network.writeBufferLowWaterMark", 32768, "Pending bytes below which a connection becomes writable again");
+    public final IntSetting networkWriteBufferHighWaterMark = new IntSetting(this, "network.writeBufferHighWaterMark", 65536, "Pending bytes above which a connection is marked not writable");
 
     public final StringSetting server_type = new StringSetting(this, "server-type", "FML", "Set the server type displayed in motd (FML/BUKKIT/VANILLA)");
     public final StringSetting lang = new StringSetting(this, "lang", "en_US", "Mohist internationalization language setting, will return the default system language when your settings are invalid");
@@ -57,6 +79,21 @@ public class MohistConfig extends ConfigBase{
 
     public final BoolSetting disableForgeChunkForceSystem = new BoolSetting(this, "forge.disablechunkforcesystem", false, "Disable ForgeChunkForceSystem"); // by Goodvise
     public final BoolSetting stopserversaveworlds = new BoolSetting(this, "world.stopserversaveworlds", false, "stopserversaveworlds");
+    public final IntSetting chunkSaveThreads = new IntSetting(this, "world.chunkSaveThreads", 2, "Chunk save pipeline compression threads, 0 saves chunks on the file IO thread");
+    public final IntSetting chunkSaveMaxInFlight = new IntSetting(this, "world.chunkSaveMaxInFlight", 512, "Chunks the save pipeline holds before the file IO thread waits");
+    public final IntSetting chunkPacketThreads = new IntSetting(this, "world.chunkPacketThreads", 2, "Threads building chunk packets for players, 0 builds them on the main thread");
+    public final IntSetting maxChunkSendsPerPlayerTick = new IntSetting(this, "world.maxChunkSendsPerPlayerTick", 20, "Chunks a player starts to receive per tick, 0 for no limit");
+    public final BoolSetting chunkSendQueue = new BoolSetting(this, "world.chunkSendQueue", true, "Stream the chunks of a new view area to players nearest and in front first, instead of loading all of them at once");
+    public final IntSetting chunkSendPlayerBytesPerTick = new IntSetting(this, "world.chunkSendPlayerBytesPerTick", 196608, "Estimated chunk packet bytes a player's send queue may start per tick, 0 for no limit");
+    public final IntSetting chunkSendGlobalBytesPerTick = new IntSetting(this, "world.chunkSendGlobalBytesPerTick", 2097152, "Estimated chunk packet bytes all send queues together may start per tick, 0 for no limit");
+    public final IntSetting chunkUnloadBatchSize = new IntSetting(this, "world.chunkUnloadBatchSize", 100, "Queued chunks a world unloads per tick at most, oldest first");
+    public final IntSetting chunkUnloadMaxMillis = new IntSetting(this, "world.chunkUnloadMaxMillis", 5, "Milliseconds a world may spend unloading queued chunks per tick, 0 for no limit");
+    public final IntSetting asyncChunkGenThreads = new IntSetting(this, "world.asyncChunkGenThreads", 0, "Threads generating the base terrain of chunks players wait for, 0 generates chunks on the main thread only");
+    public final IntSetting asyncChunkGenMaxPending = new IntSetting(this, "world.asyncChunkGenMaxPending", 64, "Chunks per world whose terrain is generated or waits to be picked up at once");
+    public final StringArraySetting asyncChunkGenSafeClasses = new StringArraySetting(this, "world.asyncChunkGenSafeClasses", "net.minecraft.world.gen.ChunkGeneratorOverworld,net.minecraft.world.biome.BiomeProvider", "Chunk generators and biome providers known to be thread-safe, worlds using anything else generate on the main thread");
+    public final IntSetting pregenMillisPerTick = new IntSetting(this, "world.pregenMillisPerTick", 20, "Milliseconds /mohist pregen may spend generating per world and tick at 20 TPS");
+    public final IntSetting pregenMinTps = new IntSetting(this, "world.pregenMinTps", 17, "/mohist pregen slows down below 19.5 TPS and pauses at this TPS");
+    public final IntSetting pregenMaxInFlight = new IntSetting(this, "world.pregenMaxInFlight", 32, "Chunks /mohist pregen hands to the terrain workers ahead of the frontier");
 
 
     /* ======================================================================== */
@@ -7,6 +7,8 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
 
 public class IOUtil{
 
@@ -110,4 +112,23 @@ public class IOUtil{
         return tBAOStream.toByteArray();
     }
 
+    /**
+     * Releases a mapping right away instead of waiting for the garbage collector,
+     * an unreleased mapping keeps the file locked on Windows.
+     *
+     * @param pBuffer
+     */
+    public static void unmap(MappedByteBuffer pBuffer){
+        try{
+            Method tCleanerMethod=pBuffer.getClass().getMethod("cleaner");
+            tCleanerMethod.setAccessible(true);
+            Object tCleaner=tCleanerMethod.invoke(pBuffer);
+            if(tCleaner!=null){
+                tCleaner.getClass().getMethod("clean").invoke(tCleaner);
+            }
+        }catch(Throwable exp){
+            // left to the garbage collector
+        }
+    }
+
 }
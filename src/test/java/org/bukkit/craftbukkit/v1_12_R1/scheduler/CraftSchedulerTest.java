@@ -0,0 +1,150 @@
+package org.bukkit.craftbukkit.v1_12_R1.scheduler;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitTask;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CraftSchedulerTest {
+
+    private static Plugin plugin;
+    private static Plugin otherPlugin;
+
+    @BeforeClass
+    public static void setUp() throws ReflectiveOperationException {
+        // The timings handlers of sync tasks ask the plugin manager whether timings are on
+        if (Bukkit.getServer() == null) {
+            PluginManager pluginManager = mock(PluginManager.class, "Test");
+            Server server = (Server) Proxy.newProxyInstance(Server.class.getClassLoader(), new Class<?>[]{Server.class},
+                    (proxy, method, args) -> method.getName().equals("getPluginManager") ? pluginManager : defaultValue(proxy, method.getName(), method.getReturnType(), args, "Test"));
+            Field field = Bukkit.class.getDeclaredField("server");
+            field.setAccessible(true);
+            field.set(null, server);
+        }
+        plugin = mockPlugin("TestPlugin");
+        otherPlugin = mockPlugin("OtherPlugin");
+    }
+
+    private static Plugin mockPlugin(String name) {
+        PluginDescriptionFile description = new PluginDescriptionFile(name, "1.0", "test." + name);
+        Logger logger = Logger.getLogger(name);
+        return (Plugin) Proxy.newProxyInstance(Plugin.class.getClassLoader(), new Class<?>[]{Plugin.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "isEnabled":
+                    return true;
+                case "getDescription":
+                    return description;
+                case "getLogger":
+                    return logger;
+                default:
+                    return defaultValue(proxy, method.getName(), method.getReturnType(), args, name);
+            }
+        });
+    }
+
+    private static <T> T mock(Class<T> type, String name) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> defaultValue(proxy, method.getName(), method.getReturnType(), args, name)));
+    }
+
+    private static Object defaultValue(Object proxy, String method, Class<?> type, Object[] args, String name) {
+        switch (method) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+            case "getName":
+                return name;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type.isPrimitive() && type != void.class) {
+            return type == long.class ? (Object) 0L : type == double.class ? (Object) 0D : type == float.class ? (Object) 0F : (Object) 0;
+        }
+        return null;
+    }
+
+    // Only the sync half, the async one would start its threads
+    private static CraftScheduler newScheduler() {
+        return new CraftScheduler(true);
+    }
+
+    private static void tick(CraftScheduler scheduler, int from, int to) {
+        for (int tick = from; tick < to; tick++) {
+            scheduler.mainThreadHeartbeat(tick);
+        }
+    }
+
+    @Test
+    public void cancelAllTasksFromTheRunningRepeatingTask() {
+        CraftScheduler scheduler = newScheduler();
+        AtomicInteger runs = new AtomicInteger();
+        AtomicInteger otherRuns = new AtomicInteger();
+        BukkitTask other = scheduler.runTaskTimer(otherPlugin, otherRuns::incrementAndGet, 5, 1);
+        BukkitTask task = scheduler.runTaskTimer(plugin, () -> {
+            runs.incrementAndGet();
+            scheduler.cancelAllTasks();
+        }, 0, 1);
+        tick(scheduler, 0, 20);
+        assertEquals(1, runs.get());
+        assertEquals(0, otherRuns.get());
+        assertTrue(task.isCancelled());
+        assertTrue(other.isCancelled());
+        assertTrue(scheduler.getPendingTasks().isEmpty());
+    }
+
+    @Test
+    public void cancelTasksFromTheRunningRepeatingTask() {
+        CraftScheduler scheduler = newScheduler();
+        AtomicInteger runs = new AtomicInteger();
+        AtomicInteger otherRuns = new AtomicInteger();
+        BukkitTask other = scheduler.runTaskTimer(otherPlugin, otherRuns::incrementAndGet, 0, 1);
+        BukkitTask task = scheduler.runTaskTimer(plugin, () -> {
+            runs.incrementAndGet();
+            scheduler.cancelTasks(plugin);
+        }, 0, 1);
+        tick(scheduler, 0, 20);
+        assertEquals(1, runs.get());
+        assertEquals(20, otherRuns.get());
+        assertTrue(task.isCancelled());
+        assertFalse(other.isCancelled());
+    }
+
+    @Test
+    public void tasksCancelledDuringATickDoNotRun() {
+        CraftScheduler scheduler = newScheduler();
+        AtomicInteger runs = new AtomicInteger();
+        BukkitTask[] later = new BukkitTask[1];
+        scheduler.runTaskLater(plugin, () -> scheduler.cancelTask(later[0].getTaskId()), 3);
+        later[0] = scheduler.runTaskTimer(plugin, runs::incrementAndGet, 3, 1);
+        tick(scheduler, 0, 10);
+        assertEquals(0, runs.get());
+        assertTrue(later[0].isCancelled());
+        assertFalse(scheduler.isQueued(later[0].getTaskId()));
+    }
+
+    @Test
+    public void tasksScheduledAfterCancelAllStillRun() {
+        CraftScheduler scheduler = newScheduler();
+        AtomicInteger runs = new AtomicInteger();
+        scheduler.runTaskTimer(plugin, () -> {
+        }, 0, 1);
+        scheduler.cancelAllTasks();
+        scheduler.runTaskLater(plugin, runs::incrementAndGet, 2);
+        tick(scheduler, 0, 5);
+        assertEquals(1, runs.get());
+    }
+}
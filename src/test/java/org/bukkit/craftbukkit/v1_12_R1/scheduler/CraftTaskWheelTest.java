@@ -0,0 +1,153 @@
+package org.bukkit.craftbukkit.v1_12_R1.scheduler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CraftTaskWheelTest {
+
+    // Async tasks need no timings handler and the wheel does not care about the kind
+    private static CraftTask task(int id, long nextRun) {
+        CraftTask task = new CraftAsyncTask(new HashMap<>(), null, () -> {
+        }, id, CraftTask.NO_REPEATING);
+        task.setNextRun(nextRun);
+        return task;
+    }
+
+    private static List<CraftTask> pollAll(CraftTaskWheel wheel, long tick) {
+        List<CraftTask> tasks = new ArrayList<>();
+        CraftTask task;
+        while ((task = wheel.poll(tick)) != null) {
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    @Test
+    public void tasksOfOneTickRunInIdOrder() {
+        CraftTaskWheel wheel = new CraftTaskWheel();
+        wheel.add(task(3, 5));
+        wheel.add(task(1, 5));
+        wheel.add(task(2, 5));
+        assertTrue(pollAll(wheel, 4).isEmpty());
+        List<CraftTask> due = pollAll(wheel, 5);
+        assertEquals(3, due.size());
+        for (int i = 0; i < due.size(); i++) {
+            assertEquals(i + 1, due.get(i).getTaskId());
+        }
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void everyTaskComesUpAtItsTick() {
+        CraftTaskWheel wheel = new CraftTaskWheel();
+        Random random = new Random(42);
+        long[] due = new long[2000];
+        for (int id = 0; id < due.length; id++) {
+            // Spread over every level, crossing many slot and level boundaries
+            due[id] = random.nextInt(1 << (6 * (1 + id % 3)));
+            wheel.add(task(id, due[id]));
+        }
+        int polled = 0;
+        for (long tick = 0; polled < due.length; tick++) {
+            for (CraftTask task : pollAll(wheel, tick)) {
+                assertEquals(due[task.getTaskId()], tick);
+                ++polled;
+            }
+        }
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void wrapsAroundLevelBoundaries() {
+        CraftTaskWheel wheel = new CraftTaskWheel();
+        wheel.add(task(0, 0));
+        pollAll(wheel, 4090);
+        long[] due = {4095, 4096, 4097, 4160, 262143, 262144, 262200};
+        for (int id = 0; id < due.length; id++) {
+            wheel.add(task(id + 1, due[id]));
+        }
+        for (int id = 0; id < due.length; id++) {
+            assertTrue(pollAll(wheel, due[id] - 1).isEmpty());
+            List<CraftTask> tasks = pollAll(wheel, due[id]);
+            assertEquals(1, tasks.size());
+            assertEquals(id + 1, tasks.get(0).getTaskId());
+        }
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void delaysBeyondTheTopLevelWaitAtItsEnd() {
+        CraftTaskWheel wheel = new CraftTaskWheel();
+        wheel.add(task(0, 0));
+        pollAll(wheel, 0);
+        long far = (1L << 24) * 3 + 17;
+        wheel.add(task(1, far));
+        assertTrue(pollAll(wheel, (1L << 24) - 1).isEmpty());
+        assertTrue(pollAll(wheel, far - 1).isEmpty());
+        assertEquals(1, wheel.size());
+        List<CraftTask> tasks = pollAll(wheel, far);
+        assertEquals(1, tasks.size());
+        assertEquals(1, tasks.get(0).getTaskId());
+    }
+
+    @Test
+    public void removingDuringATickSkipsTheTask() {
+        CraftTaskWheel wheel = new CraftTaskWheel();
+        CraftTask first = task(1, 10);
+        CraftTask second = task(2, 10);
+        CraftTask third = task(3, 10);
+        CraftTask later = task(4, 200);
+        wheel.add(first);
+        wheel.add(second);
+        wheel.add(third);
+        wheel.add(later);
+        assertSame(first, wheel.poll(10));
+        // As if the first task cancelled the others while running
+        assertSame(second, wheel.remove(2));
+        assertSame(later, wheel.remove(4));
+        assertNull(wheel.remove(2));
+        assertSame(third, wheel.poll(10));
+        assertNull(wheel.poll(10));
+        assertTrue(pollAll(wheel, 300).isEmpty());
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void removeIfTakesReadyAndSlottedTasks() {
+        CraftTaskWheel wheel = new CraftTaskWheel();
+        wheel.add(task(1, 3));
+        wheel.add(task(2, 3));
+        wheel.add(task(3, 5000));
+        assertEquals(1, wheel.poll(3).getTaskId());
+        assertTrue(wheel.removeIf(task -> true));
+        assertTrue(wheel.isEmpty());
+        assertNull(wheel.poll(3));
+        assertTrue(pollAll(wheel, 6000).isEmpty());
+    }
+
+    @Test
+    public void repeatingTaskGoesBackIn() {
+        CraftTaskWheel wheel = new CraftTaskWheel();
+        CraftTask task = task(1, 0);
+        wheel.add(task);
+        int runs = 0;
+        for (long tick = 0; tick < 1000; tick++) {
+            CraftTask polled = wheel.poll(tick);
+            if (polled != null) {
+                assertSame(task, polled);
+                assertEquals(0, tick % 7);
+                ++runs;
+                task.setNextRun(tick + 7);
+                wheel.add(task);
+            }
+        }
+        assertEquals(143, runs);
+    }
+}
@@ -0,0 +1,131 @@
+package red.mohist.common.chunk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChunkCodecTest {
+
+    private static byte[] compress(ChunkCodec codec, byte[] raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream stream = codec.compress(out)) {
+            stream.write(raw);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] decompress(ChunkCodec codec, byte[] data) throws IOException {
+        try (InputStream stream = codec.decompress(data)) {
+            return IOUtils.toByteArray(stream);
+        }
+    }
+
+    // Runs of a few values like block ids and light, mixed with noise
+    private static byte[] sample(Random random, int length) {
+        byte[] raw = new byte[length];
+        int i = 0;
+        while (i < length) {
+            int run = Math.min(length - i, random.nextInt(300));
+            if (random.nextBoolean()) {
+                Arrays.fill(raw, i, i + run, (byte) random.nextInt(4));
+            } else {
+                for (int j = 0; j < run; j++) {
+                    raw[i + j] = (byte) random.nextInt();
+                }
+            }
+            i += run;
+        }
+        return raw;
+    }
+
+    private static void assertMalformed(byte[] data) {
+        try {
+            decompress(ChunkCodec.LZ4, data);
+            fail("Expected an IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void everyCodecRoundTrips() throws IOException {
+        byte[] raw = sample(new Random(3), 70000);
+        for (ChunkCodec codec : new ChunkCodec[]{ChunkCodec.GZIP, ChunkCodec.ZLIB, ChunkCodec.NONE, ChunkCodec.LZ4}) {
+            assertArrayEquals(codec.getName(), raw, decompress(codec, compress(codec, raw)));
+        }
+    }
+
+    @Test
+    public void lz4RoundTripsEdgeCases() throws IOException {
+        Random random = new Random(7);
+        int[] lengths = {0, 1, 4, 12, 13, 14, 15, 16, 17, 270, 271, 65535, 65536, 200000};
+        for (int length : lengths) {
+            byte[] zeros = new byte[length];
+            assertArrayEquals(zeros, decompress(ChunkCodec.LZ4, compress(ChunkCodec.LZ4, zeros)));
+            byte[] noise = new byte[length];
+            random.nextBytes(noise);
+            assertArrayEquals(noise, decompress(ChunkCodec.LZ4, compress(ChunkCodec.LZ4, noise)));
+            byte[] mixed = sample(random, length);
+            assertArrayEquals(mixed, decompress(ChunkCodec.LZ4, compress(ChunkCodec.LZ4, mixed)));
+        }
+    }
+
+    @Test
+    public void lz4StaysWithinTheBound() {
+        Random random = new Random(11);
+        for (int length = 0; length < 2000; length += 37) {
+            byte[] noise = new byte[length];
+            random.nextBytes(noise);
+            byte[] block = new byte[LZ4Block.maxCompressedLength(length)];
+            assertTrue(LZ4Block.compress(noise, length, block) <= block.length);
+        }
+        byte[] zeros = new byte[100000];
+        byte[] block = new byte[LZ4Block.maxCompressedLength(zeros.length)];
+        assertTrue(LZ4Block.compress(zeros, zeros.length, block) < zeros.length / 100);
+    }
+
+    @Test
+    public void lz4RejectsBadHeaders() {
+        assertMalformed(new byte[0]);
+        assertMalformed(new byte[]{0, 0, 1});
+        // Negative, above the raw limit and more than the block can expand to
+        assertMalformed(new byte[]{(byte) 0x80, 0, 0, 0, 0});
+        assertMalformed(new byte[]{0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0});
+        assertMalformed(new byte[]{0, 0, 4, 0, 0x10, 1});
+    }
+
+    @Test
+    public void lz4RejectsCorruptBlocks() throws IOException {
+        byte[] raw = sample(new Random(5), 5000);
+        byte[] data = compress(ChunkCodec.LZ4, raw);
+        // Cut short
+        assertMalformed(Arrays.copyOf(data, data.length - 10));
+        // Longer than the block holds
+        byte[] longer = data.clone();
+        longer[3] += 1;
+        assertMalformed(longer);
+        // A match reaching back before the output
+        assertMalformed(new byte[]{0, 0, 0, 8, 0x10, 1, 5, 0});
+        // A zero match offset
+        assertMalformed(new byte[]{0, 0, 0, 8, 0x10, 1, 0, 0});
+        // Random damage must fail cleanly or decode to something of the right length
+        Random random = new Random(9);
+        for (int i = 0; i < 2000; i++) {
+            byte[] damaged = data.clone();
+            for (int j = 0; j < 3; j++) {
+                damaged[4 + random.nextInt(damaged.length - 4)] = (byte) random.nextInt();
+            }
+            try {
+                assertTrue(decompress(ChunkCodec.LZ4, damaged).length == raw.length);
+            } catch (IOException expected) {
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package red.mohist.common.chunk;
+
+import io.netty.buffer.Unpooled;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Bootstrap;
+import net.minecraft.network.EnumConnectionState;
+import net.minecraft.network.EnumPacketDirection;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.network.play.server.SPacketChunkData;
+import net.minecraft.tileentity.TileEntityChest;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.DimensionType;
+import net.minecraft.world.WorldProvider;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import sun.misc.Unsafe;
+import static org.junit.Assert.assertArrayEquals;
+
+public class ChunkPacketBuilderTest {
+
+    private static final List<IBlockState> states = new ArrayList<>();
+
+    @BeforeClass
+    public static void setUp() {
+        Bootstrap.register();
+        for (IBlockState state : Block.BLOCK_STATE_IDS) {
+            states.add(state);
+        }
+    }
+
+    // Neither side reads more of the world than its provider
+    private static WorldServer world(boolean skyLight) throws ReflectiveOperationException {
+        Field theUnsafe = Unsafe.class.getDeclaredField("theUnsafe");
+        theUnsafe.setAccessible(true);
+        WorldServer world = (WorldServer) ((Unsafe) theUnsafe.get(null)).allocateInstance(WorldServer.class);
+        world.provider = new WorldProvider() {
+            @Override
+            public DimensionType getDimensionType() {
+                return skyLight ? DimensionType.OVERWORLD : DimensionType.NETHER;
+            }
+
+            @Override
+            public boolean hasSkyLight() {
+                return skyLight;
+            }
+        };
+        return world;
+    }
+
+    /**
+     * @param distinct how many different states each section uses, more than 256 switch to the global palette
+     */
+    private static Chunk chunk(boolean skyLight, int distinct, long seed) throws ReflectiveOperationException {
+        Random random = new Random(seed);
+        Chunk chunk = new Chunk(world(skyLight), random.nextInt(200) - 100, random.nextInt(200) - 100);
+        ExtendedBlockStorage[] storages = chunk.getBlockStorageArray();
+        // Every other section, the gaps must be left out of the packet
+        for (int y = 0; y < 16; y += 2) {
+            ExtendedBlockStorage storage = new ExtendedBlockStorage(y << 4, skyLight);
+            for (int i = 0; i < 4096; ++i) {
+                IBlockState state = states.get(1 + random.nextInt(Math.min(distinct, states.size() - 1)));
+                storage.set(i & 15, i >> 8, i >> 4 & 15, state);
+                storage.setBlockLight(i & 15, i >> 8, i >> 4 & 15, random.nextInt(16));
+                if (skyLight) {
+                    storage.setSkyLight(i & 15, i >> 8, i >> 4 & 15, random.nextInt(16));
+                }
+            }
+            storages[y] = storage;
+        }
+        random.nextBytes(chunk.getBiomeArray());
+        TileEntityChest chest = new TileEntityChest();
+        BlockPos pos = new BlockPos(chunk.x << 4 | 3, 17, chunk.z << 4 | 9);
+        chest.setPos(pos);
+        chunk.getTileEntityMap().put(pos, chest);
+        return chunk;
+    }
+
+    private static byte[] vanilla(Chunk chunk) throws Exception {
+        SPacketChunkData packet = new SPacketChunkData(chunk, 65535);
+        PacketBuffer buffer = new PacketBuffer(Unpooled.buffer());
+        buffer.writeVarInt(EnumConnectionState.PLAY.getPacketId(EnumPacketDirection.CLIENTBOUND, packet));
+        packet.writePacketData(buffer);
+        byte[] bytes = new byte[buffer.readableBytes()];
+        buffer.readBytes(bytes);
+        return bytes;
+    }
+
+    private static void assertSameBytes(Chunk chunk) throws Exception {
+        assertArrayEquals(vanilla(chunk), new ChunkPacketBuilder.Snapshot(chunk).encode());
+    }
+
+    @Test
+    public void matchesVanillaWithSkyLight() throws Exception {
+        assertSameBytes(chunk(true, 3, 1));
+        assertSameBytes(chunk(true, 40, 2));
+    }
+
+    @Test
+    public void matchesVanillaWithoutSkyLight() throws Exception {
+        assertSameBytes(chunk(false, 12, 3));
+    }
+
+    @Test
+    public void matchesVanillaWithTheGlobalPalette() throws Exception {
+        assertSameBytes(chunk(true, 1000, 4));
+    }
+
+    @Test
+    public void matchesVanillaForAnEmptyChunk() throws Exception {
+        Chunk chunk = new Chunk(world(true), 5, -5);
+        assertSameBytes(chunk);
+    }
+}
@@ -0,0 +1,122 @@
+package red.mohist.common.chunk;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.minecraft.util.math.ChunkPos;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PlayerChunkSendQueueTest {
+
+    private static final PlayerChunkSendQueue.ChunkGenerated ALL_GENERATED = (x, z) -> true;
+
+    private static PlayerChunkSendQueue queue(int radius, int centerX, int centerZ) {
+        PlayerChunkSendQueue queue = new PlayerChunkSendQueue(null);
+        for (int x = centerX - radius; x <= centerX + radius; ++x) {
+            for (int z = centerZ - radius; z <= centerZ + radius; ++z) {
+                queue.add(x, z);
+            }
+        }
+        return queue;
+    }
+
+    private static List<Long> pollAll(PlayerChunkSendQueue queue, int x, int z, int yaw, int viewDistance, PlayerChunkSendQueue.ChunkGenerated generated) {
+        List<Long> chunks = new ArrayList<>();
+        long chunk;
+        while ((chunk = queue.poll(x, z, yaw, viewDistance, generated)) != PlayerChunkSendQueue.NONE) {
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    private static int distanceSq(long chunk, int x, int z) {
+        int dx = (int) chunk - x;
+        int dz = (int) (chunk >>> 32) - z;
+        return dx * dx + dz * dz;
+    }
+
+    @Test
+    public void theRingAroundThePlayerComesFirst() {
+        PlayerChunkSendQueue queue = queue(4, 10, -20);
+        List<Long> chunks = pollAll(queue, 10, -20, 0, 10, ALL_GENERATED);
+        assertEquals(81, chunks.size());
+        assertEquals(ChunkPos.asLong(10, -20), (long) chunks.get(0));
+        for (int i = 1; i < chunks.size(); ++i) {
+            assertEquals(i < 9, distanceSq(chunks.get(i), 10, -20) <= 2);
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void closerChunksComeFirstOnEachSide() {
+        List<Long> chunks = pollAll(queue(6, 0, 0), 0, 0, 0, 10, ALL_GENERATED);
+        int front = -1;
+        int behind = -1;
+        for (long chunk : chunks) {
+            int distance = distanceSq(chunk, 0, 0);
+            if ((int) (chunk >>> 32) >= 0) {
+                assertTrue(distance >= front);
+                front = distance;
+            } else {
+                assertTrue(distance >= behind);
+                behind = distance;
+            }
+        }
+    }
+
+    @Test
+    public void chunksInFrontComeBeforeChunksBehind() {
+        // Yaw 0 faces +z, 2 faces -x, 4 faces -z and 6 faces +x
+        int[][] directions = {{0, 1}, {-1, 0}, {0, -1}, {1, 0}};
+        for (int yaw = 0; yaw < 8; yaw += 2) {
+            int[] direction = directions[yaw / 2];
+            PlayerChunkSendQueue queue = new PlayerChunkSendQueue(null);
+            queue.add(-direction[0] * 3, -direction[1] * 3);
+            queue.add(direction[0] * 4, direction[1] * 4);
+            List<Long> chunks = pollAll(queue, 0, 0, yaw, 10, ALL_GENERATED);
+            assertEquals(ChunkPos.asLong(direction[0] * 4, direction[1] * 4), (long) chunks.get(0));
+            assertEquals(ChunkPos.asLong(-direction[0] * 3, -direction[1] * 3), (long) chunks.get(1));
+        }
+    }
+
+    @Test
+    public void generatedChunksComeBeforeChunksToGenerate() {
+        PlayerChunkSendQueue queue = new PlayerChunkSendQueue(null);
+        queue.add(0, 3);
+        queue.add(0, 4);
+        queue.add(1, 0);
+        List<Long> chunks = pollAll(queue, 0, 0, 0, 10, (x, z) -> z != 3);
+        assertEquals(ChunkPos.asLong(1, 0), (long) chunks.get(0));
+        assertEquals(ChunkPos.asLong(0, 4), (long) chunks.get(1));
+        assertEquals(ChunkPos.asLong(0, 3), (long) chunks.get(2));
+    }
+
+    @Test
+    public void chunksOutOfViewAreDropped() {
+        PlayerChunkSendQueue queue = queue(3, 0, 0);
+        queue.add(0, 0);
+        assertEquals(49, queue.size());
+        List<Long> chunks = pollAll(queue, 0, 0, 0, 2, ALL_GENERATED);
+        assertEquals(25, chunks.size());
+        for (long chunk : chunks) {
+            assertTrue(Math.abs((int) chunk) <= 2 && Math.abs((int) (chunk >>> 32)) <= 2);
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void movingResortsTheQueue() {
+        PlayerChunkSendQueue queue = new PlayerChunkSendQueue(null);
+        for (int z = 0; z <= 8; ++z) {
+            queue.add(0, z);
+        }
+        assertEquals(ChunkPos.asLong(0, 0), queue.poll(0, 0, 0, 10, ALL_GENERATED));
+        assertEquals(ChunkPos.asLong(0, 8), queue.poll(0, 8, 4, 10, ALL_GENERATED));
+        assertEquals(ChunkPos.asLong(0, 7), queue.poll(0, 8, 4, 10, ALL_GENERATED));
+        // Chunks added later are sorted in
+        queue.add(0, 9);
+        assertEquals(ChunkPos.asLong(0, 9), queue.poll(0, 8, 4, 10, ALL_GENERATED));
+        assertEquals(6, queue.size());
+    }
+}
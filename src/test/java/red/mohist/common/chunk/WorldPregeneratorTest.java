@@ -0,0 +1,54 @@
+package red.mohist.common.chunk;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.util.math.ChunkPos;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WorldPregeneratorTest {
+
+    @Test
+    public void ringBordersAreExact() {
+        assertEquals(0, WorldPregenerator.ring(0));
+        for (int ring = 1; ring < 3000; ++ring) {
+            long first = (2L * ring - 1) * (2L * ring - 1);
+            assertEquals(ring - 1, WorldPregenerator.ring(first - 1));
+            assertEquals(ring, WorldPregenerator.ring(first));
+        }
+        // Far enough out for the square root to round wrong
+        for (long ring = 100000000L; ring < 100000010L; ++ring) {
+            long first = (2L * ring - 1) * (2L * ring - 1);
+            assertEquals(ring - 1, WorldPregenerator.ring(first - 1));
+            assertEquals(ring, WorldPregenerator.ring(first));
+        }
+    }
+
+    @Test
+    public void spiralCoversEachRingOnceInOrder() {
+        int centerX = -7;
+        int centerZ = 12;
+        int radius = 40;
+        long side = 2L * radius + 1;
+        LongOpenHashSet seen = new LongOpenHashSet();
+        long previous = WorldPregenerator.position(centerX, centerZ, 0);
+        assertEquals(ChunkPos.asLong(centerX, centerZ), previous);
+        seen.add(previous);
+        for (long index = 1; index < side * side; ++index) {
+            long position = WorldPregenerator.position(centerX, centerZ, index);
+            int dx = (int) position - centerX;
+            int dz = (int) (position >>> 32) - centerZ;
+            assertEquals(WorldPregenerator.ring(index), Math.max(Math.abs(dx), Math.abs(dz)));
+            assertTrue(seen.add(position));
+            // Each step moves to a neighbour, also from the end of a ring to the start of the next
+            assertEquals(1, Math.abs(dx - ((int) previous - centerX)) + Math.abs(dz - ((int) (previous >>> 32) - centerZ)));
+            previous = position;
+        }
+        assertEquals(side * side, seen.size());
+        for (int x = -radius; x <= radius; ++x) {
+            for (int z = -radius; z <= radius; ++z) {
+                assertTrue(seen.contains(ChunkPos.asLong(centerX + x, centerZ + z)));
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package red.mohist.common.world;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import net.minecraft.util.math.BlockPos;
+import net.minecraftforge.common.util.BlockSnapshot;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CapturedBlockSnapshotListTest {
+
+    private static BlockPos pos(int x) {
+        return new BlockPos(x, 64, 0);
+    }
+
+    // The meta tells snapshots of one position apart, nothing here reads the block
+    private static BlockSnapshot snapshot(int x, int step) {
+        return new BlockSnapshot(0, pos(x), "minecraft", "stone", step, 3, null);
+    }
+
+    // What vanilla does on a plain list
+    private static BlockSnapshot find(List<BlockSnapshot> snapshots, int x) {
+        for (BlockSnapshot snapshot : snapshots) {
+            if (snapshot.getPos().equals(pos(x))) {
+                return snapshot;
+            }
+        }
+        return null;
+    }
+
+    private static void assertSameOrder(List<BlockSnapshot> expected, List<BlockSnapshot> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void captureMovesThePositionToTheEnd() {
+        CapturedBlockSnapshotList list = new CapturedBlockSnapshotList();
+        BlockSnapshot first = snapshot(1, 0);
+        BlockSnapshot second = snapshot(2, 1);
+        BlockSnapshot third = snapshot(3, 2);
+        BlockSnapshot again = snapshot(1, 3);
+        list.capture(first);
+        list.capture(second);
+        list.capture(third);
+        list.capture(again);
+        List<BlockSnapshot> expected = new ArrayList<>();
+        expected.add(second);
+        expected.add(third);
+        expected.add(again);
+        assertSameOrder(expected, list);
+        assertSame(again, list.get(pos(1)));
+        assertNull(list.get(pos(4)));
+    }
+
+    @Test
+    public void lookupFindsTheFirstOfDuplicates() {
+        CapturedBlockSnapshotList list = new CapturedBlockSnapshotList();
+        BlockSnapshot first = snapshot(1, 0);
+        BlockSnapshot second = snapshot(1, 1);
+        // Forge's own capture appends without removing
+        list.add(first);
+        list.add(second);
+        assertSame(first, list.get(pos(1)));
+        list.capture(snapshot(1, 2));
+        assertEquals(2, list.size());
+        assertSame(second, list.get(pos(1)));
+    }
+
+    @Test
+    public void matchesAPlainListUnderRandomEdits() {
+        Random random = new Random(1);
+        for (int iteration = 0; iteration < 1000; iteration++) {
+            CapturedBlockSnapshotList list = new CapturedBlockSnapshotList();
+            List<BlockSnapshot> expected = new ArrayList<>();
+            for (int step = 0; step < 200; step++) {
+                int op = random.nextInt(12);
+                int x = random.nextInt(30);
+                if (op < 7) {
+                    BlockSnapshot snapshot = snapshot(x, step);
+                    CapturedBlockSnapshotList.capture(list, snapshot);
+                    BlockSnapshot old = find(expected, x);
+                    if (old != null) {
+                        expected.remove(old);
+                    }
+                    expected.add(snapshot);
+                } else if (op < 8 && iteration % 2 == 0) {
+                    BlockSnapshot snapshot = snapshot(x, step);
+                    list.add(snapshot);
+                    expected.add(snapshot);
+                } else if (op < 9 && !list.isEmpty()) {
+                    int index = random.nextInt(list.size());
+                    list.remove(index);
+                    expected.remove(index);
+                } else if (op < 10 && !list.isEmpty()) {
+                    int index = random.nextInt(list.size());
+                    BlockSnapshot snapshot = snapshot(x, step);
+                    list.set(index, snapshot);
+                    expected.set(index, snapshot);
+                } else {
+                    assertSame(find(expected, x), CapturedBlockSnapshotList.find(list, pos(x)));
+                }
+                assertSameOrder(expected, list);
+            }
+        }
+    }
+}